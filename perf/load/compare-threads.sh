@@ -0,0 +1,36 @@
+#!/usr/bin/env sh
+# Throughput and latency of the load test with Tomcat worker threads and with virtual threads, at high
+# client concurrency. Reports are kept as report-platform.properties and report-virtual.properties.
+# Usage: ./compare-threads.sh; CONCURRENCY, DURATION and USERS override the defaults, ADMISSION=false
+# disables the database admission limiter.
+set -e
+CONCURRENCY=${CONCURRENCY:-1000}
+DURATION=${DURATION:-60s}
+USERS=${USERS:-100000}
+ADMISSION=${ADMISSION:-true}
+
+cd "$(dirname "$0")/../.."
+
+for mode in platform virtual; do
+  virtual=false
+  [ "$mode" = virtual ] && virtual=true
+  echo "== $mode threads, $CONCURRENCY clients, $DURATION"
+  # No baseline gate and no concurrency limit, which would cap both modes alike and answer the rest with 503.
+  # Any failed request, 503s included, fails the test: throughput of such a run says nothing about the
+  # threading model, so the comparison stops there
+  if ! ./mvnw -o -q -P load-test test -Dtest=UserLoadTest \
+    -Dspring.threads.virtual.enabled="$virtual" -Dapp.db.admission.enabled="$ADMISSION" \
+    -Dapp.concurrency-limit.enabled=false \
+    -Dload.concurrency="$CONCURRENCY" -Dload.duration="$DURATION" -Dload.users="$USERS" \
+    -Dload.baseline=none; then
+    echo "Comparison invalid: the $mode run had failed requests, see the errors column" >&2
+    exit 1
+  fi
+  cp target/load/report.properties "perf/load/report-$mode.properties"
+done
+
+echo "== throughput, req/s (platform -> virtual)"
+grep '\.throughput=' perf/load/report-platform.properties | sort | while IFS='=' read -r key platform; do
+  virtual=$(grep "^$key=" perf/load/report-virtual.properties | cut -d= -f2)
+  echo "$key: $platform -> $virtual"
+done
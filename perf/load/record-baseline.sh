@@ -0,0 +1,12 @@
+#!/usr/bin/env sh
+# Records perf/load/baseline.properties from a load test run with the default parameters (or the load.*
+# system properties passed as arguments, which the baseline then keeps). Run it on the machine the
+# load test is gated on, after an intended performance change.
+# Usage: ./record-baseline.sh [-Dload.concurrency=64 ...]
+set -e
+cd "$(dirname "$0")/../.."
+
+./mvnw -o -q -P load-test test -Dtest=UserLoadTest -Dload.baseline=none "$@"
+cp target/load/report.properties perf/load/baseline.properties
+echo "Recorded perf/load/baseline.properties:"
+cat perf/load/baseline.properties
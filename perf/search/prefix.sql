@@ -0,0 +1,9 @@
+-- Same statement as UserRepository.searchViewsAfter in PREFIX mode (limit 20 + 1 look-ahead row)
+\set n random(1, 2000000)
+SELECT id, name, email, created_at, version, updated_at
+FROM user_table
+WHERE id > 0
+  AND (lower(name) LIKE lower(substr(md5((:n * 13)::text), 1, 4)) || '%'
+    OR lower(email) LIKE lower(substr(md5((:n * 13)::text), 1, 4)) || '%')
+ORDER BY id
+LIMIT 21;
@@ -0,0 +1,18 @@
+#!/usr/bin/env sh
+# Plans and latency of the search queries on a table seeded by seed.sql.
+# Usage: ./run.sh [database]; connection settings come from the usual PG* environment variables.
+# -M prepared mirrors the JDBC driver, which switches to server-side prepared statements after 5 executions.
+set -e
+DB=${1:-user_service}
+CLIENTS=${CLIENTS:-8}
+DURATION=${DURATION:-30}
+
+cd "$(dirname "$0")"
+
+for script in prefix contains; do
+  echo "== $script: plan"
+  sed -n '/^SELECT/,$p' "$script.sql" | sed 's/:n/12345/g' \
+    | { printf 'EXPLAIN (ANALYZE, BUFFERS) '; cat; } | psql -X -d "$DB"
+  echo "== $script: pgbench, $CLIENTS clients, ${DURATION}s"
+  pgbench -n -M prepared -c "$CLIENTS" -j "$CLIENTS" -T "$DURATION" -P 5 -r -f "$script.sql" "$DB"
+done
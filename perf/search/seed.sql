@@ -0,0 +1,13 @@
+-- Fills user_table with 2,000,000 synthetic users for the search benchmark.
+-- Run against a scratch database migrated by the application: psql -d user_service -f seed.sql
+INSERT INTO user_table (id, name, email, created_at, updated_at, version)
+SELECT nextval('user_table_seq'),
+       initcap(substr(md5(g::text), 1, 6)) || ' ' || initcap(substr(md5((g * 7)::text), 1, 9)),
+       substr(md5((g * 13)::text), 1, 10) || '.' || g || '@example.com',
+       LOCALTIMESTAMP,
+       LOCALTIMESTAMP,
+       0
+FROM generate_series(1, 2000000) AS g
+ON CONFLICT (email) DO NOTHING;
+
+ANALYZE user_table;
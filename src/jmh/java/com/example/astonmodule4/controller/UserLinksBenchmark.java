@@ -0,0 +1,103 @@
+package com.example.astonmodule4.controller;
+
+import com.example.astonmodule4.model.dto.response.UserResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.hateoas.CollectionModel;
+import org.springframework.hateoas.EntityModel;
+import org.springframework.hateoas.IanaLinkRelations;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.linkTo;
+import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.methodOn;
+
+/**
+ * Link building of a users page: {@link UserLinks} as the controller does it, against the
+ * {@code methodOn} proxies it replaced. Both resolve the base URI from a bound mock request, so the
+ * state is per thread.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UserLinksBenchmark {
+
+    @Param({"1", "20", "500"})
+    public int pageSize;
+
+    private List<UserResponse> users;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/users");
+        request.setServerName("localhost");
+        request.setServerPort(8080);
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+
+        users = new ArrayList<>(pageSize);
+        for (long id = 1; id <= pageSize; id++) {
+            users.add(UserResponse.builder()
+                    .id(id)
+                    .name("User Name " + id)
+                    .email("user" + id + "@example.com")
+                    .createdAt("2024-01-15T10:30:00")
+                    .build());
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Benchmark
+    public CollectionModel<EntityModel<UserResponse>> userLinks() {
+        UserLinks links = new UserLinkFactory(true).forCurrentRequest(null, true);
+        List<EntityModel<UserResponse>> models = new ArrayList<>(users.size());
+        for (UserResponse user : users) {
+            models.add(links.toCollectionItem(user));
+        }
+        CollectionModel<EntityModel<UserResponse>> page = CollectionModel.of(models);
+        page.add(links.page(null, pageSize, IanaLinkRelations.SELF));
+        page.add(links.page((long) pageSize, pageSize, IanaLinkRelations.NEXT));
+        page.add(links.create());
+        return page;
+    }
+
+    @Benchmark
+    public CollectionModel<EntityModel<UserResponse>> methodOnLinks() {
+        List<EntityModel<UserResponse>> models = new ArrayList<>(users.size());
+        for (UserResponse user : users) {
+            Long id = user.getId();
+            models.add(EntityModel.of(user,
+                    linkTo(methodOn(UserController.class).getUser(id, null, true, null)).withSelfRel(),
+                    linkTo(methodOn(UserController.class).updateUser(id, null, null)).withRel("update"),
+                    linkTo(methodOn(UserController.class).deleteUser(id)).withRel("delete")));
+        }
+        CollectionModel<EntityModel<UserResponse>> page = CollectionModel.of(models);
+        page.add(linkTo(methodOn(UserController.class).getAllUsers(null, pageSize, null, true, null)).withSelfRel());
+        page.add(linkTo(methodOn(UserController.class).getAllUsers((long) pageSize, pageSize, null, true, null))
+                .withRel(IanaLinkRelations.NEXT));
+        page.add(linkTo(methodOn(UserController.class).createUser(null)).withRel("create"));
+        return page;
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.astonmodule4.controller;
+
+import com.example.astonmodule4.config.HalObjectMappers;
+import com.example.astonmodule4.model.dto.response.UserResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.hateoas.CollectionModel;
+import org.springframework.hateoas.EntityModel;
+import org.springframework.hateoas.IanaLinkRelations;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Serialization cost of a single user and of a users page as HAL JSON, CBOR and Smile. Payload sizes,
+ * raw and gzipped, are printed once per trial since JMH only reports times.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UserSerializationBenchmark {
+
+    public enum Format {
+        HAL_JSON, CBOR, SMILE
+    }
+
+    @Param({"HAL_JSON", "CBOR", "SMILE"})
+    public Format format;
+
+    @Param({"1", "20", "500"})
+    public int pageSize;
+
+    private ObjectMapper mapper;
+    private EntityModel<UserResponse> user;
+    private CollectionModel<EntityModel<UserResponse>> page;
+
+    @Setup
+    public void setUp() throws IOException {
+        mapper = HalObjectMappers.withHal(switch (format) {
+            case HAL_JSON -> new ObjectMapper();
+            case CBOR -> new CBORMapper();
+            case SMILE -> new SmileMapper();
+        });
+        page = usersPage(pageSize);
+        user = new UserLinks("http://localhost:8080/api/users", true, null, true)
+                .toModel(page.getContent().iterator().next().getContent());
+
+        byte[] payload = mapper.writeValueAsBytes(page);
+        System.out.printf("%n%s, %d users: %d bytes, %d bytes gzipped%n",
+                format, pageSize, payload.length, gzip(payload).length);
+    }
+
+    @Benchmark
+    public byte[] serializeUser() throws IOException {
+        return mapper.writeValueAsBytes(user);
+    }
+
+    @Benchmark
+    public byte[] serializePage() throws IOException {
+        return mapper.writeValueAsBytes(page);
+    }
+
+    static CollectionModel<EntityModel<UserResponse>> usersPage(int size) {
+        UserLinks links = new UserLinks("http://localhost:8080/api/users", true, null, true);
+        List<EntityModel<UserResponse>> users = new ArrayList<>(size);
+        LocalDateTime createdAt = LocalDateTime.of(2024, 1, 15, 10, 30);
+        for (long id = 1; id <= size; id++) {
+            users.add(links.toCollectionItem(UserResponse.builder()
+                    .id(id)
+                    .name("User Name " + id)
+                    .email("user" + id + "@example.com")
+                    .createdAt(createdAt.plusMinutes(id).toString())
+                    .build()));
+        }
+        CollectionModel<EntityModel<UserResponse>> page = CollectionModel.of(users);
+        page.add(links.page(null, size, IanaLinkRelations.SELF));
+        page.add(links.page((long) size, size, IanaLinkRelations.NEXT));
+        page.add(links.create());
+        return page;
+    }
+
+    private static byte[] gzip(byte[] payload) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(payload.length / 2);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            gzip.write(payload);
+        }
+        return compressed.toByteArray();
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.astonmodule4.mapper;
+
+import com.example.astonmodule4.model.User;
+import com.example.astonmodule4.model.UserView;
+import com.example.astonmodule4.model.dto.response.UserResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Entity and projection to {@link UserResponse} mapping of a whole page, ISO date formatting included.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UserMapperBenchmark {
+
+    @Param({"1", "20", "500"})
+    public int pageSize;
+
+    private final UserMapper userMapper = new UserMapper();
+    private List<User> users;
+    private List<UserView> views;
+
+    @Setup
+    public void setUp() {
+        users = new ArrayList<>(pageSize);
+        views = new ArrayList<>(pageSize);
+        LocalDateTime createdAt = LocalDateTime.of(2024, 1, 15, 10, 30, 15, 123_456_000);
+        for (long id = 1; id <= pageSize; id++) {
+            LocalDateTime userCreatedAt = createdAt.plusSeconds(id);
+            users.add(User.builder()
+                    .id(id)
+                    .name("User Name " + id)
+                    .email("user" + id + "@example.com")
+                    .created_at(userCreatedAt)
+                    .updated_at(userCreatedAt)
+                    .version(0L)
+                    .build());
+            views.add(new UserView(id, "User Name " + id, "user" + id + "@example.com",
+                    userCreatedAt, 0L, userCreatedAt));
+        }
+    }
+
+    @Benchmark
+    public List<UserResponse> fromEntities() {
+        List<UserResponse> responses = new ArrayList<>(users.size());
+        for (User user : users) {
+            responses.add(userMapper.toResponse(user));
+        }
+        return responses;
+    }
+
+    @Benchmark
+    public List<UserResponse> fromViews() {
+        List<UserResponse> responses = new ArrayList<>(views.size());
+        for (UserView view : views) {
+            responses.add(userMapper.toResponse(view));
+        }
+        return responses;
+    }
+}
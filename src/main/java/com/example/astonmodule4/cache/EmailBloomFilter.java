@@ -0,0 +1,125 @@
+package com.example.astonmodule4.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counting Bloom filter of existing user emails, used to skip the existsByEmail pre-check for emails
+ * that are definitely new. Counters are 4 bits wide (16 per long) and updated lock-free; a saturated
+ * counter is never decremented.
+ * <p>
+ * The unique index on user_table.email stays the source of truth: a missed email only means the
+ * insert itself reports the conflict, and a false positive only costs the pre-check query.
+ * Until {@link #markReady()} is called after warm-up every email is reported as possibly present.
+ */
+@Component
+@Slf4j
+public class EmailBloomFilter {
+    private static final int COUNTERS_PER_SLOT = 16;
+    private static final long COUNTER_MASK = 0xFL;
+
+    private final AtomicLongArray slots;
+    private final long counterCount;
+    private final int hashFunctions;
+    private volatile boolean ready;
+
+    public EmailBloomFilter(@Value("${app.users.email-filter.expected-insertions:1000000}") long expectedInsertions,
+                            @Value("${app.users.email-filter.false-positive-probability:0.01}") double falsePositiveProbability) {
+        long bits = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveProbability) / (Math.log(2) * Math.log(2)));
+        int slotCount = (int) Math.min(Integer.MAX_VALUE, (bits + COUNTERS_PER_SLOT - 1) / COUNTERS_PER_SLOT);
+        this.slots = new AtomicLongArray(slotCount);
+        this.counterCount = (long) slotCount * COUNTERS_PER_SLOT;
+        this.hashFunctions = Math.max(1, (int) Math.round((double) counterCount / expectedInsertions * Math.log(2)));
+        log.info("Email filter sized for {} emails: {} counters, {} hash functions",
+                expectedInsertions, counterCount, hashFunctions);
+    }
+
+    public boolean mightContain(String email) {
+        if (!ready) {
+            return true;
+        }
+        long hash1 = hash(email);
+        long hash2 = mix(hash1);
+        for (int i = 0; i < hashFunctions; i++) {
+            if (counter(index(hash1, hash2, i)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public void add(String email) {
+        long hash1 = hash(email);
+        long hash2 = mix(hash1);
+        for (int i = 0; i < hashFunctions; i++) {
+            update(index(hash1, hash2, i), 1);
+        }
+    }
+
+    public void remove(String email) {
+        long hash1 = hash(email);
+        long hash2 = mix(hash1);
+        for (int i = 0; i < hashFunctions; i++) {
+            update(index(hash1, hash2, i), -1);
+        }
+    }
+
+    public void markReady() {
+        ready = true;
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    private long counter(long index) {
+        long slot = slots.get((int) (index / COUNTERS_PER_SLOT));
+        return (slot >>> shift(index)) & COUNTER_MASK;
+    }
+
+    private void update(long index, int delta) {
+        int slotIndex = (int) (index / COUNTERS_PER_SLOT);
+        int shift = shift(index);
+        long previous;
+        long next;
+        do {
+            previous = slots.get(slotIndex);
+            long counter = (previous >>> shift) & COUNTER_MASK;
+            if (counter == COUNTER_MASK || (delta < 0 && counter == 0)) {
+                return;
+            }
+            next = delta > 0 ? previous + (1L << shift) : previous - (1L << shift);
+        } while (!slots.compareAndSet(slotIndex, previous, next));
+    }
+
+    private long index(long hash1, long hash2, int i) {
+        return Math.floorMod(hash1 + i * hash2, counterCount);
+    }
+
+    private static int shift(long index) {
+        return (int) (index % COUNTERS_PER_SLOT) * 4;
+    }
+
+    // 64-bit FNV-1a over the UTF-16 code units
+    private static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    // MurmurHash3 finalizer, gives the second hash for double hashing
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value | 1;
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.astonmodule4.cache;
+
+import com.example.astonmodule4.model.dto.response.UserResponse;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * In-process cache of users by id. Caffeine evicts by W-TinyLFU and TTL, and concurrent misses
+ * on the same id are coalesced into a single load. Cached {@link UserResponse}s are shared
+ * between requests and must not be modified.
+ * <p>
+ * A load may read a row just before it is deleted or changed elsewhere. Each eviction is therefore
+ * numbered and remembered for the TTL, and a load that an eviction of its id overtook returns its result
+ * without caching it.
+ */
+@Component
+@Slf4j
+public class UserCache {
+    private static final String CACHE_NAME = "users";
+
+    private final Cache<Long, UserResponse> cache;
+    private final Cache<Long, Long> evictions;
+    private final AtomicLong evictionSequence = new AtomicLong();
+    private volatile long allEvictedAt;
+
+    public UserCache(@Value("${app.users.cache.maximum-size:100000}") long maximumSize,
+                     @Value("${app.users.cache.expire-after-write:10m}") Duration expireAfterWrite,
+                     MeterRegistry meterRegistry) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+        this.evictions = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+        log.info("User cache initialized: maximumSize={}, expireAfterWrite={}", maximumSize, expireAfterWrite);
+    }
+
+    public UserResponse get(Long id, Function<Long, UserResponse> loader) {
+        UserResponse[] overtaken = new UserResponse[1];
+        UserResponse user = cache.get(id, key -> {
+            long startedAt = evictionSequence.get();
+            UserResponse loaded = loader.apply(key);
+            Long evictedAt = evictions.getIfPresent(key);
+            if (allEvictedAt > startedAt || (evictedAt != null && evictedAt > startedAt)) {
+                // Returning null leaves the id uncached
+                overtaken[0] = loaded;
+                return null;
+            }
+            return loaded;
+        });
+        return user != null ? user : overtaken[0];
+    }
+
+    public UserResponse getIfPresent(Long id) {
+        return cache.getIfPresent(id);
+    }
+
+    public Map<Long, UserResponse> getAllPresent(Iterable<Long> ids) {
+        return cache.getAllPresent(ids);
+    }
+
+    /**
+     * Caches {@code user} unless a newer version of it is cached already: writes are not serialized with
+     * their puts, so the result of an older, racing update may arrive last.
+     */
+    public void put(UserResponse user) {
+        cache.asMap().merge(user.getId(), user, (current, candidate) -> isNewer(current, candidate) ? current : candidate);
+    }
+
+    // Numbered before the entry is dropped, so that a load still running sees it when it finishes
+    public void evict(Long id) {
+        evictions.put(id, evictionSequence.incrementAndGet());
+        cache.invalidate(id);
+    }
+
+    public void evictAll() {
+        allEvictedAt = evictionSequence.incrementAndGet();
+        cache.invalidateAll();
+    }
+
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    private static boolean isNewer(UserResponse user, UserResponse other) {
+        return user.getVersion() != null && other.getVersion() != null && user.getVersion() > other.getVersion();
+    }
+}
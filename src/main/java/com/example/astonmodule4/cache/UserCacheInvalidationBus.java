@@ -0,0 +1,211 @@
+package com.example.astonmodule4.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the local {@link UserCache} of every node consistent through PostgreSQL LISTEN/NOTIFY.
+ * Changed ids are collected after commit and sent in batched NOTIFY payloads; a dedicated
+ * (unpooled) connection on each node listens for them and evicts the ids published by other nodes.
+ */
+@Component
+@Slf4j
+public class UserCacheInvalidationBus implements SmartLifecycle {
+    static final String CHANNEL = "user_cache_invalidation";
+
+    // NOTIFY payloads are limited to 8000 bytes
+    private static final int MAX_PAYLOAD_LENGTH = 7500;
+    private static final int POLL_TIMEOUT_MILLIS = 500;
+
+    private final UserCache userCache;
+    private final JdbcTemplate jdbcTemplate;
+    private final DataSourceProperties dataSourceProperties;
+    private final boolean enabled;
+    private final long reconnectDelayMillis;
+
+    private final String nodeId = UUID.randomUUID().toString();
+    private final Set<Long> pendingIds = ConcurrentHashMap.newKeySet();
+    private volatile boolean running;
+    private Thread listenerThread;
+
+    public UserCacheInvalidationBus(UserCache userCache,
+                                    JdbcTemplate jdbcTemplate,
+                                    DataSourceProperties dataSourceProperties,
+                                    @Value("${app.users.cache.invalidation.enabled:true}") boolean enabled,
+                                    @Value("${app.users.cache.invalidation.reconnect-delay-ms:5000}") long reconnectDelayMillis) {
+        this.userCache = userCache;
+        this.jdbcTemplate = jdbcTemplate;
+        this.dataSourceProperties = dataSourceProperties;
+        this.enabled = enabled;
+        this.reconnectDelayMillis = reconnectDelayMillis;
+    }
+
+    public void publish(Long id) {
+        publish(List.of(id));
+    }
+
+    public void publish(Collection<Long> ids) {
+        if (!enabled || ids.isEmpty()) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            // Other nodes must not reload the old row before our transaction is visible
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    pendingIds.addAll(ids);
+                }
+            });
+        } else {
+            pendingIds.addAll(ids);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.users.cache.invalidation.flush-interval-ms:50}")
+    public void flush() {
+        if (!enabled || pendingIds.isEmpty()) {
+            return;
+        }
+        List<Long> ids = new ArrayList<>(pendingIds.size());
+        for (Iterator<Long> iterator = pendingIds.iterator(); iterator.hasNext(); ) {
+            ids.add(iterator.next());
+            iterator.remove();
+        }
+
+        StringBuilder payload = new StringBuilder(nodeId).append(':');
+        int payloadStart = payload.length();
+        int sent = 0;
+        try {
+            for (Long id : ids) {
+                if (payload.length() > payloadStart) {
+                    payload.append(',');
+                }
+                payload.append(id);
+                if (payload.length() >= MAX_PAYLOAD_LENGTH) {
+                    notify(payload);
+                    payload.setLength(payloadStart);
+                }
+                sent++;
+            }
+            if (payload.length() > payloadStart) {
+                notify(payload);
+            }
+            log.debug("Published cache invalidation for {} users", sent);
+        } catch (RuntimeException e) {
+            log.warn("Failed to publish cache invalidation, will retry: {}", e.getMessage());
+            pendingIds.addAll(ids);
+        }
+    }
+
+    private void notify(CharSequence payload) {
+        jdbcTemplate.query("SELECT pg_notify(?, ?)", (ResultSetExtractor<Void>) resultSet -> null,
+                CHANNEL, payload.toString());
+    }
+
+    @Override
+    public void start() {
+        if (!enabled) {
+            log.info("User cache invalidation bus is disabled");
+            return;
+        }
+        running = true;
+        listenerThread = new Thread(this::listen, "user-cache-invalidation-listener");
+        listenerThread.setDaemon(true);
+        listenerThread.start();
+    }
+
+    @Override
+    public void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        flush();
+        listenerThread.interrupt();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void listen() {
+        while (running) {
+            try (Connection connection = DriverManager.getConnection(dataSourceProperties.determineUrl(),
+                    dataSourceProperties.determineUsername(), dataSourceProperties.determinePassword())) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + CHANNEL);
+                }
+                // Invalidations sent while we were not listening are lost, so start from an empty cache
+                userCache.evictAll();
+                log.info("Listening for user cache invalidations on channel {}", CHANNEL);
+
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                while (running) {
+                    PGNotification[] notifications = pgConnection.getNotifications(POLL_TIMEOUT_MILLIS);
+                    if (notifications != null) {
+                        for (PGNotification notification : notifications) {
+                            try {
+                                handle(notification.getParameter());
+                            } catch (RuntimeException e) {
+                                // A malformed or foreign payload must not take the listener down
+                                log.warn("Ignoring user cache invalidation {}: {}", notification.getParameter(), e.toString());
+                            }
+                        }
+                    }
+                }
+            } catch (SQLException e) {
+                if (running) {
+                    log.warn("User cache invalidation listener failed, reconnecting in {} ms: {}",
+                            reconnectDelayMillis, e.getMessage());
+                    sleepBeforeReconnect();
+                }
+            }
+        }
+    }
+
+    private void handle(String payload) {
+        int separator = payload.indexOf(':');
+        if (separator < 0 || nodeId.equals(payload.substring(0, separator))) {
+            return;
+        }
+        int evicted = 0;
+        for (String id : payload.substring(separator + 1).split(",")) {
+            if (!id.isEmpty()) {
+                userCache.evict(Long.valueOf(id));
+                evicted++;
+            }
+        }
+        log.debug("Evicted {} users invalidated by another node", evicted);
+    }
+
+    private void sleepBeforeReconnect() {
+        try {
+            Thread.sleep(reconnectDelayMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.astonmodule4.concurrency;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Concurrency limit adjusted by AIMD on observed latency. Every request that completes within the
+ * latency threshold while the limit is at least half used raises the limit by {@code 1 / limit}, about
+ * one per round trip of a full window. A slow or dropped request multiplies it by {@code backoffRatio},
+ * at most once per window: after a backoff, further slow responses are ignored until as many requests as
+ * the new limit have completed, since the requests already in flight saw the same congestion.
+ * The limit stays within {@code [minLimit, maxLimit]}. All counters are updated by CAS.
+ */
+public class AdaptiveConcurrencyLimit {
+    private final int minLimit;
+    private final int maxLimit;
+    private final long latencyThresholdNanos;
+    private final double backoffRatio;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong limitBits;
+    private final AtomicLong completed = new AtomicLong();
+    // Completion count from which the next backoff is allowed; Long.MAX_VALUE while one is being applied
+    private final AtomicLong nextBackoffAt = new AtomicLong();
+
+    public AdaptiveConcurrencyLimit(int initialLimit, int minLimit, int maxLimit,
+                                    long latencyThresholdNanos, double backoffRatio) {
+        if (minLimit < 1 || minLimit > maxLimit || backoffRatio <= 0 || backoffRatio >= 1) {
+            throw new IllegalArgumentException("Expected 1 <= minLimit <= maxLimit and 0 < backoffRatio < 1");
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.latencyThresholdNanos = latencyThresholdNanos;
+        this.backoffRatio = backoffRatio;
+        this.limitBits = new AtomicLong(Double.doubleToRawLongBits(
+                Math.max(minLimit, Math.min(maxLimit, initialLimit))));
+    }
+
+    /**
+     * @return {@code true} if the request was admitted; it must then be completed with {@link #release}
+     */
+    public boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= getLimit()) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * @param latencyNanos how long the admitted request took
+     * @param dropped      whether it failed because something downstream was overloaded
+     */
+    public void release(long latencyNanos, boolean dropped) {
+        int inFlightBefore = inFlight.getAndDecrement();
+        long completion = completed.incrementAndGet();
+        if (dropped || latencyNanos > latencyThresholdNanos) {
+            backOff(completion);
+            return;
+        }
+        limitBits.updateAndGet(bits -> {
+            double limit = Double.longBitsToDouble(bits);
+            if (inFlightBefore * 2 >= limit) {
+                limit = Math.min(maxLimit, limit + 1 / limit);
+            }
+            return Double.doubleToRawLongBits(limit);
+        });
+    }
+
+    private void backOff(long completion) {
+        long allowedAt = nextBackoffAt.get();
+        if (completion < allowedAt || !nextBackoffAt.compareAndSet(allowedAt, Long.MAX_VALUE)) {
+            return;
+        }
+        double limit = Double.longBitsToDouble(limitBits.updateAndGet(bits ->
+                Double.doubleToRawLongBits(Math.max(minLimit, Double.longBitsToDouble(bits) * backoffRatio))));
+        nextBackoffAt.set(completion + (long) limit);
+    }
+
+    public int getLimit() {
+        return (int) Double.longBitsToDouble(limitBits.get());
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+}
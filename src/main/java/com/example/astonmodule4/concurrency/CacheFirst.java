@@ -0,0 +1,18 @@
+package com.example.astonmodule4.concurrency;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * A service method that answers from an in-process cache when it can. {@link DatabaseAdmissionLimiter} does
+ * not admit the call as a whole, so cache hits never wait for a permit; the method runs its cache misses
+ * through {@link DatabaseAdmissionLimiter#admit(java.util.function.Supplier)} instead.
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface CacheFirst {
+}
@@ -0,0 +1,35 @@
+package com.example.astonmodule4.concurrency;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.time.Duration;
+
+/**
+ * One {@link TokenBucket} per client key. Buckets live in a Caffeine cache, whose striped hash table
+ * serves lookups without locking; buckets idle for longer than a full refill are dropped, which is
+ * the same as keeping them full.
+ */
+public class ClientRateLimiter {
+    private final double ratePerSecond;
+    private final int burst;
+    private final Cache<String, TokenBucket> buckets;
+
+    public ClientRateLimiter(double ratePerSecond, int burst, long maxClients) {
+        this.ratePerSecond = ratePerSecond;
+        this.burst = burst;
+        long refillNanos = (long) (burst / ratePerSecond * 1_000_000_000L);
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(maxClients)
+                .expireAfterAccess(Duration.ofNanos(Math.max(refillNanos, 1_000_000_000L)))
+                .build();
+    }
+
+    /**
+     * @return 0 if the client may proceed, otherwise the nanoseconds until it may retry
+     */
+    public long tryAcquire(String clientKey) {
+        long now = System.nanoTime();
+        return buckets.get(clientKey, key -> new TokenBucket(ratePerSecond, burst, now)).tryAcquire(now);
+    }
+}
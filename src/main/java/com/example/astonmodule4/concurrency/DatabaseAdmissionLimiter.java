@@ -0,0 +1,138 @@
+package com.example.astonmodule4.concurrency;
+
+import com.example.astonmodule4.exception.DatabaseBusyException;
+import com.example.astonmodule4.routing.ReplicaSet;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Admits at most as many concurrent service calls as the Hikari pools have connections: the primary's, plus
+ * the replicas' when read replica routing is on. With request handlers on virtual threads nothing else bounds
+ * concurrency, and thousands of callers parked inside Hikari's {@code getConnection} would each hold a request
+ * until the 30 s connection timeout. Here they wait in a fair queue for at most {@code queue-timeout} and are
+ * then rejected with 503.
+ * <p>
+ * Runs outside the transaction advice, so a permit is taken before a connection is. Nested service calls
+ * on the same thread reuse the caller's permit. Methods marked {@link CacheFirst} are not admitted as a whole;
+ * they take a permit through {@link #admit} only when the cache misses.
+ */
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 100)
+@ConditionalOnProperty(name = "app.db.admission.enabled", havingValue = "true", matchIfMissing = true)
+@Slf4j
+public class DatabaseAdmissionLimiter {
+    private static final ThreadLocal<Boolean> ADMITTED = new ThreadLocal<>();
+
+    private final Semaphore permits;
+    private final Duration queueTimeout;
+    private final Timer waitTimer;
+    private final Counter rejections;
+
+    /**
+     * @param permits zero to size the limiter to the pools
+     */
+    public DatabaseAdmissionLimiter(MeterRegistry meterRegistry,
+                                    ObjectProvider<ReplicaSet> replicaSet,
+                                    @Value("${spring.datasource.hikari.maximum-pool-size:10}") int poolSize,
+                                    @Value("${app.db.admission.permits:0}") int permits,
+                                    @Value("${app.db.admission.queue-timeout:2s}") Duration queueTimeout) {
+        int size = permits > 0 ? permits : totalPoolSize(replicaSet.getIfAvailable(), poolSize);
+        this.permits = new Semaphore(size, true);
+        this.queueTimeout = queueTimeout;
+        this.waitTimer = Timer.builder("db.admission.wait")
+                .description("Time service calls waited for a database admission permit")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.rejections = Counter.builder("db.admission.rejected")
+                .description("Service calls rejected after waiting queue-timeout for a permit")
+                .register(meterRegistry);
+        Gauge.builder("db.admission.available", this.permits, Semaphore::availablePermits)
+                .description("Free database admission permits")
+                .register(meterRegistry);
+        Gauge.builder("db.admission.queued", this.permits, Semaphore::getQueueLength)
+                .description("Service calls waiting for a database admission permit")
+                .register(meterRegistry);
+        log.info("Database admission limited to {} concurrent service calls, queue timeout {}", size, queueTimeout);
+    }
+
+    @Around("within(com.example.astonmodule4.service..*) && @within(org.springframework.stereotype.Service) "
+            + "&& !@annotation(com.example.astonmodule4.concurrency.CacheFirst)")
+    public Object admitServiceCall(ProceedingJoinPoint joinPoint) throws Throwable {
+        if (ADMITTED.get() != null) {
+            return joinPoint.proceed();
+        }
+        acquire();
+        try {
+            return joinPoint.proceed();
+        } finally {
+            release();
+        }
+    }
+
+    /**
+     * Runs {@code call} under a permit, for the database work of a {@link CacheFirst} method.
+     */
+    public <T> T admit(Supplier<T> call) {
+        if (ADMITTED.get() != null) {
+            return call.get();
+        }
+        acquire();
+        try {
+            return call.get();
+        } finally {
+            release();
+        }
+    }
+
+    private void acquire() {
+        long startedAt = System.nanoTime();
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(queueTimeout.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        waitTimer.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+        if (!acquired) {
+            rejections.increment();
+            throw new DatabaseBusyException(queueTimeout);
+        }
+        ADMITTED.set(Boolean.TRUE);
+    }
+
+    private void release() {
+        ADMITTED.remove();
+        permits.release();
+    }
+
+    // Primary and replicas together: reads spread over all of them, while a burst of writes beyond the primary's
+    // pool waits inside Hikari
+    private static int totalPoolSize(ReplicaSet replicaSet, int poolSize) {
+        if (replicaSet == null) {
+            return poolSize;
+        }
+        return replicaSet.getTargets().values().stream()
+                .mapToInt(dataSource -> dataSource instanceof HikariDataSource pool ? pool.getMaximumPoolSize() : poolSize)
+                .sum();
+    }
+}
@@ -0,0 +1,155 @@
+package com.example.astonmodule4.concurrency;
+
+import com.example.astonmodule4.exception.UserExceptionHandler.ErrorResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fails fast instead of queueing when /api/users is overloaded. A client over its token bucket gets 429;
+ * a request beyond the adaptive concurrency limit gets 503. Both carry {@code Retry-After}. Clients
+ * presenting one of the configured API keys get a bucket per key; everyone else, including requests with
+ * an unknown key, is limited by remote address, so made-up keys neither buy fresh bursts nor push real
+ * clients' buckets out of the limiter.
+ * <p>
+ * Behind a load balancer the remote address is the balancer's. When it is one of the trusted proxies, the
+ * client address is taken from {@code X-Forwarded-For}: the rightmost entry not added by a trusted proxy,
+ * since everything to its left was written by the client and can be forged. Requests from any other address
+ * are keyed by that address and their {@code X-Forwarded-For} is ignored.
+ * <p>
+ * Long-lived requests (the SSE stream, NDJSON export and CSV import) are rate limited but bypass the
+ * concurrency limit, since their duration says nothing about server latency.
+ */
+@Slf4j
+public class LoadSheddingFilter extends OncePerRequestFilter {
+    private static final String FORWARDED_FOR = "X-Forwarded-For";
+    private static final Set<String> LONG_LIVED_PATHS = Set.of("/api/users/stream", "/api/users/export", "/api/users/import");
+
+    private final ClientRateLimiter rateLimiter;
+    private final AdaptiveConcurrencyLimit concurrencyLimit;
+    private final String apiKeyHeader;
+    private final Set<String> apiKeys;
+    private final Set<String> trustedProxies;
+    private final ObjectMapper objectMapper;
+    private final Counter rateLimited;
+    private final Counter shed;
+
+    /**
+     * @param rateLimiter      {@code null} disables rate limiting
+     * @param concurrencyLimit {@code null} disables the concurrency limit
+     * @param apiKeys          API keys that get a bucket of their own
+     * @param trustedProxies   addresses of the proxies whose {@code X-Forwarded-For} is believed
+     */
+    public LoadSheddingFilter(ClientRateLimiter rateLimiter, AdaptiveConcurrencyLimit concurrencyLimit,
+                              String apiKeyHeader, Set<String> apiKeys, Set<String> trustedProxies,
+                              ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        this.rateLimiter = rateLimiter;
+        this.concurrencyLimit = concurrencyLimit;
+        this.apiKeyHeader = apiKeyHeader;
+        this.apiKeys = Set.copyOf(apiKeys);
+        this.trustedProxies = Set.copyOf(trustedProxies);
+        this.objectMapper = objectMapper;
+        this.rateLimited = Counter.builder("http.server.requests.shed")
+                .description("Requests rejected before reaching a handler")
+                .tag("reason", "rate_limit")
+                .register(meterRegistry);
+        this.shed = Counter.builder("http.server.requests.shed")
+                .description("Requests rejected before reaching a handler")
+                .tag("reason", "concurrency_limit")
+                .register(meterRegistry);
+        if (concurrencyLimit != null) {
+            Gauge.builder("http.server.concurrency.limit", concurrencyLimit, AdaptiveConcurrencyLimit::getLimit)
+                    .description("Current adaptive concurrency limit")
+                    .register(meterRegistry);
+            Gauge.builder("http.server.concurrency.in-flight", concurrencyLimit, AdaptiveConcurrencyLimit::getInFlight)
+                    .description("Requests currently admitted by the concurrency limit")
+                    .register(meterRegistry);
+        }
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        if (rateLimiter != null) {
+            long waitNanos = rateLimiter.tryAcquire(clientKey(request));
+            if (waitNanos > 0) {
+                rateLimited.increment();
+                reject(response, HttpStatus.TOO_MANY_REQUESTS, "TOO_MANY_REQUESTS", "Rate limit exceeded",
+                        Math.max(TimeUnit.NANOSECONDS.toSeconds(waitNanos + 999_999_999L), 1));
+                return;
+            }
+        }
+
+        if (concurrencyLimit == null || isLongLived(request)) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        if (!concurrencyLimit.tryAcquire()) {
+            shed.increment();
+            log.debug("Request shed at concurrency limit {}: {} {}",
+                    concurrencyLimit.getLimit(), request.getMethod(), request.getRequestURI());
+            reject(response, HttpStatus.SERVICE_UNAVAILABLE, "SERVICE_UNAVAILABLE", "Server is overloaded", 1);
+            return;
+        }
+        long startedAt = System.nanoTime();
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            concurrencyLimit.release(System.nanoTime() - startedAt,
+                    response.getStatus() == HttpStatus.SERVICE_UNAVAILABLE.value());
+        }
+    }
+
+    private String clientKey(HttpServletRequest request) {
+        String apiKey = request.getHeader(apiKeyHeader);
+        return apiKey != null && apiKeys.contains(apiKey) ? "key:" + apiKey : "ip:" + clientAddress(request);
+    }
+
+    private String clientAddress(HttpServletRequest request) {
+        String address = request.getRemoteAddr();
+        if (!trustedProxies.contains(address)) {
+            return address;
+        }
+        List<String> hops = new ArrayList<>();
+        for (Enumeration<String> headers = request.getHeaders(FORWARDED_FOR); headers.hasMoreElements(); ) {
+            for (String hop : headers.nextElement().split(",")) {
+                if (!hop.isBlank()) {
+                    hops.add(hop.strip());
+                }
+            }
+        }
+        for (int i = hops.size() - 1; i >= 0 && trustedProxies.contains(address); i--) {
+            address = hops.get(i);
+        }
+        return address;
+    }
+
+    private static boolean isLongLived(HttpServletRequest request) {
+        return LONG_LIVED_PATHS.contains(request.getRequestURI().substring(request.getContextPath().length()));
+    }
+
+    private void reject(HttpServletResponse response, HttpStatus status, String code, String message,
+                        long retryAfterSeconds) throws IOException {
+        response.setStatus(status.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(), new ErrorResponse(code, message));
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.astonmodule4.config;
+
+import com.example.astonmodule4.routing.DataSourceRoutingProperties;
+import com.example.astonmodule4.routing.ReadWriteRoutingDataSource;
+import com.example.astonmodule4.routing.ReadYourWritesFilter;
+import com.example.astonmodule4.routing.ReplicaSet;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Read replicas, enabled with {@code app.datasource.routing.enabled=true}. The only {@link DataSource} bean
+ * is then a lazy proxy over a {@link ReadWriteRoutingDataSource}, so Boot's own pool backs off and JPA,
+ * JdbcTemplate and Flyway all route through it; the pools themselves belong to the {@link ReplicaSet}.
+ * To try it locally, point a replica at a second PostgreSQL instance with the same schema.
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.datasource.routing.enabled", havingValue = "true")
+@EnableConfigurationProperties(DataSourceRoutingProperties.class)
+@Slf4j
+public class DataSourceRoutingConfig {
+
+    @Bean
+    public ReplicaSet replicaSet(DataSourceProperties dataSourceProperties,
+                                 DataSourceRoutingProperties routingProperties,
+                                 Environment environment,
+                                 MeterRegistry meterRegistry) {
+        MicrometerMetricsTrackerFactory metricsTrackerFactory = new MicrometerMetricsTrackerFactory(meterRegistry);
+
+        HikariDataSource primary = dataSourceProperties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        Binder.get(environment).bind("spring.datasource.hikari", Bindable.ofInstance(primary));
+        primary.setPoolName(ReplicaSet.PRIMARY);
+        primary.setMetricsTrackerFactory(metricsTrackerFactory);
+
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        List<DataSourceRoutingProperties.Replica> replicaProperties = routingProperties.getReplicas();
+        for (int i = 0; i < replicaProperties.size(); i++) {
+            DataSourceRoutingProperties.Replica properties = replicaProperties.get(i);
+            HikariDataSource replica = new HikariDataSource();
+            replica.setPoolName("replica-" + i);
+            replica.setJdbcUrl(properties.getUrl());
+            replica.setUsername(properties.getUsername() != null ? properties.getUsername() : primary.getUsername());
+            replica.setPassword(properties.getPassword() != null ? properties.getPassword() : primary.getPassword());
+            replica.setMaximumPoolSize(properties.getMaximumPoolSize() != null
+                    ? properties.getMaximumPoolSize() : primary.getMaximumPoolSize());
+            replica.setReadOnly(true);
+            replica.setConnectionTimeout(routingProperties.getReplicaConnectionTimeout().toMillis());
+            // Replicas are optional: start even when one is down and let the health check pick it up
+            replica.setInitializationFailTimeout(-1);
+            replica.setMetricsTrackerFactory(metricsTrackerFactory);
+            replicas.put(replica.getPoolName(), replica);
+        }
+
+        ReplicaSet replicaSet = new ReplicaSet(primary, replicas, routingProperties.getMaxLag());
+        for (ReplicaSet.Replica replica : replicaSet.getReplicas()) {
+            Gauge.builder("db.replica.healthy", replica, r -> r.isHealthy() ? 1 : 0)
+                    .description("Whether the replica passed its last health check and serves reads")
+                    .tag("replica", replica.getName())
+                    .register(meterRegistry);
+            Gauge.builder("db.replica.lag", replica, ReplicaSet.Replica::getLagSeconds)
+                    .description("Replay lag of the replica at its last health check")
+                    .tag("replica", replica.getName())
+                    .baseUnit("seconds")
+                    .register(meterRegistry);
+        }
+        log.info("Read replica routing enabled: {} replicas, max lag {}", replicas.size(), routingProperties.getMaxLag());
+        return replicaSet;
+    }
+
+    @Bean
+    public DataSource dataSource(ReplicaSet replicaSet) {
+        ReadWriteRoutingDataSource routingDataSource = new ReadWriteRoutingDataSource(replicaSet);
+        routingDataSource.afterPropertiesSet();
+        return new LazyConnectionDataSourceProxy(routingDataSource);
+    }
+
+    @Bean
+    public FilterRegistrationBean<ReadYourWritesFilter> readYourWritesFilter(DataSourceRoutingProperties routingProperties) {
+        FilterRegistrationBean<ReadYourWritesFilter> registration =
+                new FilterRegistrationBean<>(new ReadYourWritesFilter(routingProperties.getReadYourWritesWindow()));
+        registration.addUrlPatterns("/api/*");
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 15);
+        registration.setEnabled(!routingProperties.getReadYourWritesWindow().isZero());
+        return registration;
+    }
+}
@@ -0,0 +1,28 @@
+package com.example.astonmodule4.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.hateoas.mediatype.MessageResolver;
+import org.springframework.hateoas.mediatype.hal.CurieProvider;
+import org.springframework.hateoas.mediatype.hal.Jackson2HalModule;
+import org.springframework.hateoas.server.core.AnnotationLinkRelationProvider;
+import org.springframework.hateoas.server.core.DefaultLinkRelationProvider;
+import org.springframework.hateoas.server.core.DelegatingLinkRelationProvider;
+
+/**
+ * Teaches an {@link ObjectMapper} of any data format to render representation models as HAL,
+ * the same structure Spring HATEOAS produces for {@code application/hal+json}.
+ */
+public final class HalObjectMappers {
+
+    private HalObjectMappers() {
+    }
+
+    public static ObjectMapper withHal(ObjectMapper mapper) {
+        DelegatingLinkRelationProvider relationProvider = new DelegatingLinkRelationProvider(
+                new AnnotationLinkRelationProvider(), new DefaultLinkRelationProvider());
+        mapper.registerModule(new Jackson2HalModule());
+        mapper.setHandlerInstantiator(new Jackson2HalModule.HalHandlerInstantiator(
+                relationProvider, CurieProvider.NONE, MessageResolver.DEFAULTS_ONLY));
+        return mapper;
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.astonmodule4.config;
+
+import com.example.astonmodule4.idempotency.IdempotencyFilter;
+import com.example.astonmodule4.idempotency.IdempotencyStore;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.util.unit.DataSize;
+
+@Configuration
+public class IdempotencyConfig {
+
+    /**
+     * After load shedding, so that retries still count against the client's rate limit, and after the
+     * SQL statement counting, so that a replay shows up as a request without statements.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "app.idempotency.enabled", havingValue = "true", matchIfMissing = true)
+    public FilterRegistrationBean<IdempotencyFilter> idempotencyFilter(
+            IdempotencyStore store,
+            ObjectMapper objectMapper,
+            MeterRegistry meterRegistry,
+            @Value("${app.idempotency.max-body-size:1MB}") DataSize maxBodySize) {
+        FilterRegistrationBean<IdempotencyFilter> registration = new FilterRegistrationBean<>(
+                new IdempotencyFilter(store, Math.toIntExact(maxBodySize.toBytes()), objectMapper, meterRegistry));
+        registration.addUrlPatterns("/api/users");
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 20);
+        return registration;
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.astonmodule4.config;
+
+import com.example.astonmodule4.concurrency.AdaptiveConcurrencyLimit;
+import com.example.astonmodule4.concurrency.ClientRateLimiter;
+import com.example.astonmodule4.concurrency.LoadSheddingFilter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+import java.time.Duration;
+import java.util.Set;
+
+@Configuration
+@Slf4j
+public class LoadSheddingConfig {
+
+    /**
+     * Runs after the observation filter, so shed requests still show up in http.server.requests,
+     * and before everything that does work for the request.
+     */
+    @Bean
+    public FilterRegistrationBean<LoadSheddingFilter> loadSheddingFilter(
+            ObjectMapper objectMapper,
+            MeterRegistry meterRegistry,
+            @Value("${app.rate-limit.enabled:true}") boolean rateLimitEnabled,
+            @Value("${app.rate-limit.requests-per-second:50}") double requestsPerSecond,
+            @Value("${app.rate-limit.burst:100}") int burst,
+            @Value("${app.rate-limit.max-clients:100000}") long maxClients,
+            @Value("${app.rate-limit.api-key-header:X-API-Key}") String apiKeyHeader,
+            @Value("${app.rate-limit.api-keys:}") Set<String> apiKeys,
+            @Value("${app.rate-limit.trusted-proxies:}") Set<String> trustedProxies,
+            @Value("${app.concurrency-limit.enabled:true}") boolean concurrencyLimitEnabled,
+            @Value("${app.concurrency-limit.initial:50}") int initialLimit,
+            @Value("${app.concurrency-limit.min:10}") int minLimit,
+            @Value("${app.concurrency-limit.max:500}") int maxLimit,
+            @Value("${app.concurrency-limit.latency-threshold:250ms}") Duration latencyThreshold,
+            @Value("${app.concurrency-limit.backoff-ratio:0.9}") double backoffRatio) {
+        ClientRateLimiter rateLimiter = rateLimitEnabled
+                ? new ClientRateLimiter(requestsPerSecond, burst, maxClients)
+                : null;
+        AdaptiveConcurrencyLimit concurrencyLimit = concurrencyLimitEnabled
+                ? new AdaptiveConcurrencyLimit(initialLimit, minLimit, maxLimit, latencyThreshold.toNanos(), backoffRatio)
+                : null;
+        log.info("Load shedding: rate limit {} ({}/s, burst {}, {} API keys, {} trusted proxies), concurrency limit {} ({} in [{}, {}], threshold {})",
+                rateLimitEnabled ? "on" : "off", requestsPerSecond, burst, apiKeys.size(), trustedProxies.size(),
+                concurrencyLimitEnabled ? "on" : "off", initialLimit, minLimit, maxLimit, latencyThreshold);
+
+        FilterRegistrationBean<LoadSheddingFilter> registration = new FilterRegistrationBean<>(
+                new LoadSheddingFilter(rateLimiter, concurrencyLimit, apiKeyHeader, apiKeys, trustedProxies,
+                        objectMapper, meterRegistry));
+        registration.addUrlPatterns("/api/*");
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 5);
+        return registration;
+    }
+}
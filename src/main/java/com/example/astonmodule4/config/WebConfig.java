@@ -1,11 +1,25 @@
 package com.example.astonmodule4.config;
 
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
 import org.springframework.web.servlet.config.annotation.CorsRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
+import java.util.List;
+
 @Configuration
 public class WebConfig implements WebMvcConfigurer {
+    private final ObjectProvider<Jackson2ObjectMapperBuilder> objectMapperBuilder;
+
+    public WebConfig(ObjectProvider<Jackson2ObjectMapperBuilder> objectMapperBuilder) {
+        this.objectMapperBuilder = objectMapperBuilder;
+    }
 
     @Override
     public void addCorsMappings(CorsRegistry registry) {
@@ -28,4 +42,25 @@ public class WebConfig implements WebMvcConfigurer {
                 .allowedHeaders("*")
                 .allowCredentials(false);
     }
-}
\ No newline at end of file
+
+    /**
+     * Binary representations for service-to-service clients ({@code Accept: application/cbor} or
+     * {@code application/x-jackson-smile}). The default CBOR and Smile converters know nothing about HAL,
+     * so they are replaced with ones that render the same {@code _embedded}/{@code _links} structure as JSON.
+     * They come last, so clients that accept anything still get JSON.
+     */
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        converters.removeIf(converter -> converter instanceof MappingJackson2CborHttpMessageConverter
+                || converter instanceof MappingJackson2SmileHttpMessageConverter);
+        converters.add(new MappingJackson2CborHttpMessageConverter(
+                HalObjectMappers.withHal(newObjectMapperBuilder().factory(new CBORFactory()).build())));
+        converters.add(new MappingJackson2SmileHttpMessageConverter(
+                HalObjectMappers.withHal(newObjectMapperBuilder().factory(new SmileFactory()).build())));
+    }
+
+    // The builder bean applies the spring.jackson.* settings and registered modules; it is prototype-scoped
+    private Jackson2ObjectMapperBuilder newObjectMapperBuilder() {
+        return objectMapperBuilder.getIfAvailable(Jackson2ObjectMapperBuilder::new);
+    }
+}
@@ -1,11 +1,27 @@
 package com.example.astonmodule4.controller;
 
+import com.example.astonmodule4.exception.UserVersionConflictException;
+import com.example.astonmodule4.idempotency.IdempotencyFilter;
+import com.example.astonmodule4.model.UserChangePosition;
+import com.example.astonmodule4.model.UserField;
+import com.example.astonmodule4.model.UserVersion;
 import com.example.astonmodule4.model.dto.request.CreateUserRequest;
+import com.example.astonmodule4.model.dto.request.CreateUsersBatchRequest;
 import com.example.astonmodule4.model.dto.request.UpdateUserRequest;
+import com.example.astonmodule4.model.dto.response.CreateUsersBatchResponse;
+import com.example.astonmodule4.model.dto.response.UserChangesResponse;
+import com.example.astonmodule4.model.dto.response.UserImportResponse;
+import com.example.astonmodule4.model.dto.response.UserLookup;
+import com.example.astonmodule4.model.dto.response.UserLookupResponse;
+import com.example.astonmodule4.model.dto.response.UserPage;
 import com.example.astonmodule4.model.dto.response.UserResponse;
+import com.example.astonmodule4.service.UserChangeBroadcaster;
+import com.example.astonmodule4.service.UserImportService;
 import com.example.astonmodule4.service.UserService;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.enums.ParameterIn;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
@@ -17,17 +33,26 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.hateoas.CollectionModel;
 import org.springframework.hateoas.EntityModel;
+import org.springframework.hateoas.IanaLinkRelations;
 import org.springframework.hateoas.Link;
 import org.springframework.hateoas.server.mvc.WebMvcLinkBuilder;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.List;
+import java.util.Set;
 import java.util.stream.Collectors;
 
-import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.linkTo;
-import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.methodOn;
-
 @RestController
 @RequestMapping("/api/users")
 @RequiredArgsConstructor
@@ -36,32 +61,230 @@ public class UserController {
     private static final Logger LOGGER = LoggerFactory.getLogger(UserController.class);
 
     private final UserService userService;
+    private final UserImportService userImportService;
+    private final ObjectMapper objectMapper;
+    private final UserLinkFactory userLinkFactory;
+    private final UserChangeBroadcaster userChangeBroadcaster;
 
-    @Operation(summary = "Получить всех пользователей", description = "Возвращает список всех пользователей")
-    @ApiResponse(responseCode = "200", description = "Успешное получение списка пользователей")
+    @Operation(summary = "Получить пользователей",
+            description = "Возвращает страницу пользователей, упорядоченных по ID (курсорная пагинация)")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Успешное получение страницы пользователей"),
+            @ApiResponse(responseCode = "304", description = "Страница не изменилась", content = @Content),
+            @ApiResponse(responseCode = "400", description = "Неверный размер страницы", content = @Content)
+    })
     @GetMapping
-    public ResponseEntity<CollectionModel<EntityModel<UserResponse>>> getAllUsers() {
-        LOGGER.info("Getting all users process");
-        List<UserResponse> users = userService.getAllUsers();
+    public ResponseEntity<CollectionModel<EntityModel<UserResponse>>> getAllUsers(
+            @Parameter(description = "ID последнего пользователя предыдущей страницы")
+            @RequestParam(required = false) Long after,
+
+            @Parameter(description = "Размер страницы (по умолчанию 20, максимум 500)")
+            @RequestParam(required = false) Integer limit,
+
+            @Parameter(description = "Поля ответа через запятую: id, name, email, createdAt (id возвращается всегда)")
+            @RequestParam(required = false) String fields,
+
+            @Parameter(description = "false - без HAL-ссылок у пользователей")
+            @RequestParam(defaultValue = "true") boolean links,
+
+            WebRequest request) {
+
+        LOGGER.info("Getting users page process: after={}, limit={}, fields={}", after, limit, fields);
+        Set<UserField> selectedFields = UserService.parseFields(fields);
+        if (request.getHeader(HttpHeaders.IF_NONE_MATCH) != null && request.checkNotModified(
+                pageTag(userService.getUsersPageTag(after, limit), selectedFields, links))) {
+            LOGGER.debug("Users page not modified: after={}, limit={}", after, limit);
+            return null;
+        }
+        UserPage page = userService.getUsersPage(after, limit, selectedFields);
+        List<UserResponse> users = page.getUsers();
         LOGGER.debug("Getting count of users: {}", users.size());
 
+        UserLinks userLinks = userLinkFactory.forCurrentRequest(fields, links);
         List<EntityModel<UserResponse>> userModels = users.stream()
-                .map(user -> EntityModel.of(user)
-                        .add(linkTo(methodOn(UserController.class).getUser(user.getId())).withSelfRel())
-                        .add(linkTo(methodOn(UserController.class).updateUser(user.getId(), null)).withRel("update"))
-                        .add(linkTo(methodOn(UserController.class).deleteUser(user.getId())).withRel("delete")))
+                .map(userLinks::toCollectionItem)
+                .collect(Collectors.toList());
+
+        CollectionModel<EntityModel<UserResponse>> collectionModel = CollectionModel.of(userModels);
+        if (userLinks.isEnabled()) {
+            collectionModel.add(userLinks.page(after, limit, IanaLinkRelations.SELF));
+        }
+        if (page.getNextCursor() != null) {
+            collectionModel.add(userLinks.page(page.getNextCursor(), page.getLimit(), IanaLinkRelations.NEXT));
+        }
+        if (userLinks.isEnabled()) {
+            collectionModel.add(userLinks.create());
+        }
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.getEtag() != null) {
+            response.eTag(pageTag(page.getEtag(), selectedFields, links));
+        }
+        return response.body(collectionModel);
+    }
+
+    @Operation(summary = "Найти пользователей",
+            description = "Ищет пользователей по части имени или email без учета регистра; "
+                    + "результаты упорядочены по ID (курсорная пагинация)")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Результаты поиска"),
+            @ApiResponse(responseCode = "400", description = "Неверный запрос, режим или размер страницы",
+                    content = @Content)
+    })
+    @GetMapping("/search")
+    public ResponseEntity<CollectionModel<EntityModel<UserResponse>>> searchUsers(
+            @Parameter(description = "Строка поиска", required = true)
+            @RequestParam String q,
+
+            @Parameter(description = "PREFIX - начало имени или email, CONTAINS - вхождение (не короче 3 символов)")
+            @RequestParam(required = false) String mode,
+
+            @Parameter(description = "ID последнего пользователя предыдущей страницы")
+            @RequestParam(required = false) Long after,
+
+            @Parameter(description = "Размер страницы (по умолчанию 20, максимум 500)")
+            @RequestParam(required = false) Integer limit,
+
+            @Parameter(description = "Поля ответа через запятую: id, name, email, createdAt (id возвращается всегда)")
+            @RequestParam(required = false) String fields,
+
+            @Parameter(description = "false - без HAL-ссылок у пользователей")
+            @RequestParam(defaultValue = "true") boolean links) {
+
+        LOGGER.info("Searching users process: q={}, mode={}, after={}, limit={}, fields={}", q, mode, after, limit, fields);
+        UserPage page = userService.searchUsers(q, mode, after, limit, UserService.parseFields(fields));
+        LOGGER.debug("Users found: {}", page.getUsers().size());
+
+        UserLinks userLinks = userLinkFactory.forCurrentRequest(fields, links);
+        List<EntityModel<UserResponse>> userModels = page.getUsers().stream()
+                .map(userLinks::toCollectionItem)
                 .collect(Collectors.toList());
 
         CollectionModel<EntityModel<UserResponse>> collectionModel = CollectionModel.of(userModels);
-        collectionModel.add(linkTo(methodOn(UserController.class).getAllUsers()).withSelfRel());
-        collectionModel.add(linkTo(methodOn(UserController.class).createUser(null)).withRel("create"));
+        if (userLinks.isEnabled()) {
+            collectionModel.add(userLinks.search(q, mode, after, limit, IanaLinkRelations.SELF));
+        }
+        if (page.getNextCursor() != null) {
+            collectionModel.add(userLinks.search(q, mode, page.getNextCursor(), page.getLimit(), IanaLinkRelations.NEXT));
+        }
 
         return ResponseEntity.ok(collectionModel);
     }
+
+    @Operation(summary = "Получить пользователей по списку ID",
+            description = "Возвращает пользователей в порядке запрошенных ID и список ID, которые не найдены")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Пользователи получены"),
+            @ApiResponse(responseCode = "400", description = "Пустой или слишком длинный список ID", content = @Content)
+    })
+    @GetMapping(params = "ids")
+    public ResponseEntity<UserLookupResponse> getUsersByIds(
+            @Parameter(description = "ID пользователей через запятую (не более 1000)", required = true)
+            @RequestParam List<Long> ids,
+
+            @Parameter(description = "Поля ответа через запятую: id, name, email, createdAt (id возвращается всегда)")
+            @RequestParam(required = false) String fields,
+
+            @Parameter(description = "false - без HAL-ссылок у пользователей")
+            @RequestParam(defaultValue = "true") boolean links) {
+
+        LOGGER.info("Getting users by ids process: count={}, fields={}", ids.size(), fields);
+        UserLookup lookup = userService.getUsersByIds(ids, UserService.parseFields(fields));
+        LOGGER.debug("Users found: {}, missing: {}", lookup.getUsers().size(), lookup.getMissingIds().size());
+
+        UserLinks userLinks = userLinkFactory.forCurrentRequest(fields, links);
+        List<EntityModel<UserResponse>> userModels = lookup.getUsers().stream()
+                .map(userLinks::toLookupItem)
+                .collect(Collectors.toList());
+
+        UserLookupResponse response = new UserLookupResponse(userModels, lookup.getMissingIds());
+        if (userLinks.isEnabled()) {
+            response.add(userLinks.lookup(ids));
+            response.add(userLinks.users());
+        }
+
+        return ResponseEntity.ok(response);
+    }
+
+    @Operation(summary = "Получить изменения пользователей",
+            description = "Возвращает изменения после переданного токена; удаления передаются как записи DELETED. "
+                    + "Изменение попадает в ленту только после завершения всех пишущих транзакций, начатых раньше "
+                    + "него: пока идет долгая транзакция (например, импорт CSV), новые изменения задерживаются")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Изменения получены"),
+            @ApiResponse(responseCode = "400", description = "Неверный токен или размер страницы", content = @Content)
+    })
+    @GetMapping("/changes")
+    public ResponseEntity<UserChangesResponse> getChanges(
+            @Parameter(description = "Токен из nextToken предыдущего ответа; без него выдача начинается с начала")
+            @RequestParam(required = false) String since,
+
+            @Parameter(description = "Максимальное число изменений (по умолчанию 100, максимум 1000)")
+            @RequestParam(required = false) Integer limit) {
+
+        LOGGER.info("Getting user changes process: since={}, limit={}", since, limit);
+        UserChangesResponse response = userService.getChanges(since, limit);
+        LOGGER.debug("User changes got: count={}, nextToken={}", response.getChanges().size(), response.getNextToken());
+
+        return ResponseEntity.ok(response);
+    }
+
+    @Operation(summary = "Подписаться на изменения пользователей",
+            description = "Server-Sent Events: события CREATED, UPDATED и DELETED по мере фиксации изменений; "
+                    + "id события можно передать в Last-Event-ID для продолжения после переподключения. "
+                    + "Как и лента изменений, поток задерживает события, пока идет долгая пишущая транзакция "
+                    + "(например, импорт CSV)")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Поток событий открыт"),
+            @ApiResponse(responseCode = "400", description = "Неверный Last-Event-ID", content = @Content)
+    })
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamChanges(
+            @Parameter(description = "id последнего полученного события")
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId,
+
+            @Parameter(description = "Токен изменений, с которого начать, если нет Last-Event-ID")
+            @RequestParam(required = false) String since) {
+
+        String resumeToken = lastEventId != null ? lastEventId : since;
+        LOGGER.info("Streaming user changes process: resumeFrom={}", resumeToken);
+        UserChangePosition resumeFrom = resumeToken != null && !resumeToken.isBlank()
+                ? UserService.parseChangeToken(resumeToken)
+                : null;
+
+        return userChangeBroadcaster.subscribe(resumeFrom);
+    }
+
+    @Operation(summary = "Выгрузить всех пользователей",
+            description = "Потоково выгружает всех пользователей в формате NDJSON, по одному JSON-объекту на строку")
+    @ApiResponse(responseCode = "200", description = "Выгрузка пользователей")
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportUsers(
+            @Parameter(description = "Поля через запятую: id, name, email, createdAt (id выгружается всегда)")
+            @RequestParam(required = false) String fields) {
+
+        LOGGER.info("Exporting users process: fields={}", fields);
+        Set<UserField> selectedFields = UserService.parseFields(fields);
+
+        StreamingResponseBody body = outputStream -> {
+            UserNdjsonWriter writer = new UserNdjsonWriter(objectMapper, outputStream, selectedFields);
+            userService.exportUsers(writer, selectedFields);
+            LOGGER.info("Users exported: count={}", writer.finish());
+        };
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+
     @Operation(summary = "Создать пользователя", description = "Создает нового пользователя")
+    @Parameter(name = IdempotencyFilter.IDEMPOTENCY_KEY_HEADER, in = ParameterIn.HEADER,
+            description = "Ключ идемпотентности: повтор запроса с тем же ключом возвращает первый ответ")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Пользователь успешно создан"),
-            @ApiResponse(responseCode = "400", description = "Неверные входные данные", content = @Content)
+            @ApiResponse(responseCode = "400", description = "Неверные входные данные", content = @Content),
+            @ApiResponse(responseCode = "409", description = "Запрос с этим ключом еще выполняется", content = @Content),
+            @ApiResponse(responseCode = "422", description = "Ключ уже использован для другого запроса", content = @Content)
     })
     @PostMapping
     public ResponseEntity<EntityModel<UserResponse>> createUser(
@@ -72,64 +295,118 @@ public class UserController {
         UserResponse createdUser = userService.createUser(userRequest);
         LOGGER.info("User created: ID={}, email={}", createdUser.getId(), createdUser.getEmail());
 
-        EntityModel<UserResponse> model = EntityModel.of(createdUser);
-        model.add(linkTo(methodOn(UserController.class).getUser(createdUser.getId())).withSelfRel());
-        model.add(linkTo(methodOn(UserController.class).updateUser(createdUser.getId(), null)).withRel("update"));
-        model.add(linkTo(methodOn(UserController.class).deleteUser(createdUser.getId())).withRel("delete"));
-        model.add(linkTo(methodOn(UserController.class).getAllUsers()).withRel("users"));
+        EntityModel<UserResponse> model = userLinkFactory.forCurrentRequest().toModel(createdUser);
 
         return ResponseEntity.ok(model);
     }
 
+    @Operation(summary = "Создать пользователей пакетом",
+            description = "Создает пользователей одним пакетом и возвращает результат для каждого элемента")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Пакет обработан"),
+            @ApiResponse(responseCode = "400", description = "Неверные входные данные", content = @Content)
+    })
+    @PostMapping("/batch")
+    public ResponseEntity<CreateUsersBatchResponse> createUsers(
+            @Parameter(description = "Данные для создания пользователей", required = true)
+            @RequestBody @Valid CreateUsersBatchRequest batchRequest) {
+
+        LOGGER.info("Creating users batch process: size={}", batchRequest.getUsers().size());
+        CreateUsersBatchResponse response = userService.createUsers(batchRequest.getUsers());
+        LOGGER.info("Users batch processed: created={}, conflicts={}", response.getCreated(), response.getConflicts());
+
+        return ResponseEntity.ok(response);
+    }
+
+    @Operation(summary = "Импортировать пользователей из CSV",
+            description = "Потоково загружает CSV (name,email) через PostgreSQL COPY; существующие email пропускаются")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Импорт завершен"),
+            @ApiResponse(responseCode = "400", description = "Не удалось прочитать файл", content = @Content)
+    })
+    @PostMapping(value = "/import", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<UserImportResponse> importUsers(
+            @Parameter(description = "CSV-файл с колонками name,email", required = true)
+            @RequestParam("file") MultipartFile file) throws IOException {
+
+        LOGGER.info("Importing users process: file={}, size={}", file.getOriginalFilename(), file.getSize());
+        UserImportResponse response;
+        try (InputStream csv = file.getInputStream()) {
+            response = userImportService.importCsv(csv);
+        }
+        LOGGER.info("Users imported: inserted={}, rejected={}, rowsPerSecond={}",
+                response.getInsertedRows(), response.getRejectedRows(), response.getRowsPerSecond());
+
+        return ResponseEntity.ok(response);
+    }
+
     @Operation(summary = "Обновить пользователя", description = "Обновляет данные пользователя по ID")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Пользователь успешно обновлен"),
             @ApiResponse(responseCode = "404", description = "Пользователь не найден", content = @Content),
-            @ApiResponse(responseCode = "400", description = "Неверные входные данные", content = @Content)
+            @ApiResponse(responseCode = "400", description = "Неверные входные данные", content = @Content),
+            @ApiResponse(responseCode = "412", description = "Пользователь был изменен другим запросом",
+                    content = @Content)
     })
     @PutMapping("/{id}")
     public ResponseEntity<EntityModel<UserResponse>> updateUser(
             @Parameter(description = "ID пользователя", required = true)
             @PathVariable Long id,
 
+            @Parameter(description = "ETag версии пользователя, которую изменяет клиент")
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+
             @Parameter(description = "Данные для обновления пользователя", required = true)
             @RequestBody @Valid UpdateUserRequest userRequest) {
 
-        LOGGER.info("Updating user process: id={}", id);
-        UserResponse updatedUser = userService.updateUser(id, userRequest);
+        LOGGER.info("Updating user process: id={}, ifMatch={}", id, ifMatch);
+        UserResponse updatedUser = userService.updateUser(id, parseIfMatch(id, ifMatch), userRequest);
         LOGGER.info("User updated: ID={}, name={}, email={}",
                 updatedUser.getId(), updatedUser.getName(), updatedUser.getEmail());
 
-        EntityModel<UserResponse> model = EntityModel.of(updatedUser);
-        model.add(linkTo(methodOn(UserController.class).getUser(id)).withSelfRel());
-        model.add(linkTo(methodOn(UserController.class).deleteUser(id)).withRel("delete"));
-        model.add(linkTo(methodOn(UserController.class).getAllUsers()).withRel("users"));
+        UserLinks links = userLinkFactory.forCurrentRequest();
+        EntityModel<UserResponse> model = EntityModel.of(updatedUser, links.user(id), links.delete(id), links.users());
 
-        return ResponseEntity.ok(model);
+        return versioned(updatedUser.getVersion(), updatedUser.getUpdatedAt()).body(model);
     }
 
     @Operation(summary = "Получить пользователя по ID", description = "Возвращает пользователя по указанному ID")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Пользователь найден"),
+            @ApiResponse(responseCode = "304", description = "Пользователь не изменился", content = @Content),
             @ApiResponse(responseCode = "404", description = "Пользователь не найден", content = @Content)
     })
     @GetMapping("/{id}")
     public ResponseEntity<EntityModel<UserResponse>> getUser(
             @Parameter(description = "ID пользователя", required = true)
-            @PathVariable Long id) {
+            @PathVariable Long id,
+
+            @Parameter(description = "Поля ответа через запятую: id, name, email, createdAt (id возвращается всегда)")
+            @RequestParam(required = false) String fields,
+
+            @Parameter(description = "false - без HAL-ссылок у пользователей")
+            @RequestParam(defaultValue = "true") boolean links,
 
-        LOGGER.info("Getting user process: id={}", id);
-        UserResponse gotUser = userService.getUserById(id);
+            WebRequest request) {
+
+        LOGGER.info("Getting user process: id={}, fields={}", id, fields);
+        Set<UserField> selectedFields = UserService.parseFields(fields);
+        // Conditional polls are answered from the version alone, without loading, mapping or linking the user
+        if (request.getHeader(HttpHeaders.IF_NONE_MATCH) != null
+                || request.getHeader(HttpHeaders.IF_MODIFIED_SINCE) != null) {
+            UserVersion version = userService.getUserVersion(id);
+            if (request.checkNotModified(weakTag(version.version()), toEpochMilli(version.updatedAt()))) {
+                LOGGER.debug("User not modified: ID={}, version={}", id, version.version());
+                return null;
+            }
+        }
+        UserResponse gotUser = userService.getUserById(id, selectedFields);
         LOGGER.info("User got: ID={}, name={}, email={}",
                 gotUser.getId(), gotUser.getName(), gotUser.getEmail());
 
-        EntityModel<UserResponse> model = EntityModel.of(gotUser);
-        model.add(linkTo(methodOn(UserController.class).getUser(id)).withSelfRel());
-        model.add(linkTo(methodOn(UserController.class).updateUser(id, null)).withRel("update"));
-        model.add(linkTo(methodOn(UserController.class).deleteUser(id)).withRel("delete"));
-        model.add(linkTo(methodOn(UserController.class).getAllUsers()).withRel("users"));
+        EntityModel<UserResponse> model = userLinkFactory.forCurrentRequest(fields, links).toModel(gotUser);
 
-        return ResponseEntity.ok(model);
+        return versioned(gotUser.getVersion(), gotUser.getUpdatedAt()).body(model);
     }
 
     @Operation(summary = "Удалить пользователя", description = "Удаляет пользователя по ID")
@@ -148,4 +425,57 @@ public class UserController {
 
         return ResponseEntity.ok().build();
     }
+
+    // Our tags are weak and name the user's version, not a byte sequence, so the version is matched whether the
+    // client sends the tag weak or strong; a foreign tag can never match
+    private static Long parseIfMatch(Long id, String ifMatch) {
+        if (ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        String tag = ifMatch.trim();
+        if (tag.startsWith("W/")) {
+            tag = tag.substring(2);
+        }
+        if (tag.length() > 2 && tag.startsWith("\"") && tag.endsWith("\"")) {
+            try {
+                return Long.parseLong(tag.substring(1, tag.length() - 1));
+            } catch (NumberFormatException e) {
+                LOGGER.debug("Unknown entity tag in If-Match: {}", tag);
+            }
+        }
+        throw new UserVersionConflictException(id);
+    }
+
+    private static ResponseEntity.BodyBuilder versioned(Long version, LocalDateTime updatedAt) {
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok();
+        if (version != null) {
+            builder.eTag(weakTag(version));
+        }
+        if (updatedAt != null) {
+            builder.lastModified(toEpochMilli(updatedAt));
+        }
+        return builder;
+    }
+
+    /**
+     * JSON, CBOR and Smile representations of a user (and gzip or not) share one tag, so it can only be weak.
+     */
+    private static String weakTag(Object value) {
+        return "W/\"" + value + "\"";
+    }
+
+    /**
+     * Tag of one representation of a page: the same users with other fields or without links are another
+     * response, so the projection and the links mode are part of the tag.
+     */
+    private static String pageTag(String tag, Set<UserField> fields, boolean links) {
+        String projection = fields != null
+                ? fields.stream().map(UserField::jsonName).collect(Collectors.joining("+"))
+                : "all";
+        return weakTag(tag + "-" + projection + (links ? "" : "-nolinks"));
+    }
+
+    private static long toEpochMilli(LocalDateTime dateTime) {
+        return dateTime != null ? dateTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() : -1;
+    }
 }
\ No newline at end of file
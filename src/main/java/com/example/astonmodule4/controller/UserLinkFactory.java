@@ -0,0 +1,32 @@
+package com.example.astonmodule4.controller;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.linkTo;
+
+/**
+ * Creates {@link UserLinks} for the current request. The /api/users base URI is resolved once per
+ * request from the controller mapping instead of recording a {@code methodOn} proxy invocation for
+ * every link.
+ */
+@Component
+public class UserLinkFactory {
+    private final boolean collectionItemActions;
+
+    public UserLinkFactory(@Value("${app.users.links.collection-item-actions:true}") boolean collectionItemActions) {
+        this.collectionItemActions = collectionItemActions;
+    }
+
+    public UserLinks forCurrentRequest() {
+        return forCurrentRequest(null, true);
+    }
+
+    /**
+     * @param fields the request's {@code fields} parameter as given, or {@code null}
+     * @param links  the request's {@code links} parameter
+     */
+    public UserLinks forCurrentRequest(String fields, boolean links) {
+        return new UserLinks(linkTo(UserController.class).toUri().toString(), collectionItemActions, fields, links);
+    }
+}
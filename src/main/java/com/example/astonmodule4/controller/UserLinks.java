@@ -0,0 +1,135 @@
+package com.example.astonmodule4.controller;
+
+import com.example.astonmodule4.model.dto.response.UserResponse;
+import org.springframework.hateoas.EntityModel;
+import org.springframework.hateoas.Link;
+import org.springframework.hateoas.LinkRelation;
+import org.springframework.web.util.UriUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Links of the /api/users resources, expanded from a base URI by plain string concatenation.
+ * Collection links carry the request's {@code fields} and {@code links} parameters along, so that
+ * following them keeps the same representation; with {@code links=false} the models get no item links.
+ */
+public class UserLinks {
+    private final String usersHref;
+    private final boolean collectionItemActions;
+    private final boolean enabled;
+    private final String viewQuery;
+
+    UserLinks(String usersHref, boolean collectionItemActions, String fields, boolean enabled) {
+        this.usersHref = usersHref;
+        this.collectionItemActions = collectionItemActions;
+        this.enabled = enabled;
+        StringBuilder query = new StringBuilder();
+        if (fields != null) {
+            query.append("fields=").append(UriUtils.encodeQueryParam(fields, StandardCharsets.UTF_8));
+        }
+        if (!enabled) {
+            query.append(query.isEmpty() ? "" : "&").append("links=false");
+        }
+        this.viewQuery = query.toString();
+    }
+
+    /**
+     * @return {@code false} if the client asked for {@code links=false}; only pagination links are added then
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public Link user(Long id) {
+        return Link.of(userHref(id));
+    }
+
+    public Link update(Long id) {
+        return Link.of(userHref(id), "update");
+    }
+
+    public Link delete(Long id) {
+        return Link.of(userHref(id), "delete");
+    }
+
+    public Link users() {
+        return Link.of(usersHref, "users");
+    }
+
+    public Link create() {
+        return Link.of(usersHref, "create");
+    }
+
+    public Link page(Long after, Integer limit, LinkRelation relation) {
+        StringBuilder href = new StringBuilder(usersHref);
+        char separator = '?';
+        if (after != null) {
+            href.append(separator).append("after=").append(after);
+            separator = '&';
+        }
+        if (limit != null) {
+            href.append(separator).append("limit=").append(limit);
+            separator = '&';
+        }
+        if (!viewQuery.isEmpty()) {
+            href.append(separator).append(viewQuery);
+        }
+        return Link.of(href.toString(), relation);
+    }
+
+    public Link search(String query, String mode, Long after, Integer limit, LinkRelation relation) {
+        StringBuilder href = new StringBuilder(usersHref).append("/search?q=")
+                .append(UriUtils.encodeQueryParam(query, StandardCharsets.UTF_8));
+        if (mode != null) {
+            href.append("&mode=").append(UriUtils.encodeQueryParam(mode, StandardCharsets.UTF_8));
+        }
+        if (after != null) {
+            href.append("&after=").append(after);
+        }
+        if (limit != null) {
+            href.append("&limit=").append(limit);
+        }
+        if (!viewQuery.isEmpty()) {
+            href.append('&').append(viewQuery);
+        }
+        return Link.of(href.toString(), relation);
+    }
+
+    public Link lookup(List<Long> ids) {
+        StringBuilder href = new StringBuilder(usersHref).append("?ids=");
+        for (int i = 0; i < ids.size(); i++) {
+            if (i > 0) {
+                href.append(',');
+            }
+            href.append(ids.get(i));
+        }
+        if (!viewQuery.isEmpty()) {
+            href.append('&').append(viewQuery);
+        }
+        return Link.of(href.toString());
+    }
+
+    public EntityModel<UserResponse> toModel(UserResponse user) {
+        if (!enabled) {
+            return EntityModel.of(user);
+        }
+        return EntityModel.of(user, user(user.getId()), update(user.getId()), delete(user.getId()), users());
+    }
+
+    public EntityModel<UserResponse> toCollectionItem(UserResponse user) {
+        if (!enabled) {
+            return EntityModel.of(user);
+        }
+        EntityModel<UserResponse> model = EntityModel.of(user, user(user.getId()));
+        if (collectionItemActions) {
+            model.add(update(user.getId()));
+            model.add(delete(user.getId()));
+        }
+        return model;
+    }
+
+    public EntityModel<UserResponse> toLookupItem(UserResponse user) {
+        return enabled ? EntityModel.of(user, user(user.getId())) : EntityModel.of(user);
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.astonmodule4.controller;
+
+import com.example.astonmodule4.model.UserField;
+import com.example.astonmodule4.model.dto.response.UserResponse;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.function.Consumer;
+
+class UserNdjsonWriter implements Consumer<UserResponse> {
+    private static final int FLUSH_EVERY = 1000;
+
+    private final JsonGenerator generator;
+    private final Set<UserField> fields;
+    private long written;
+
+    /**
+     * @param fields fields to write, {@code null} for all of them; {@code id} is always written
+     */
+    UserNdjsonWriter(ObjectMapper objectMapper, OutputStream outputStream, Set<UserField> fields) throws IOException {
+        this.generator = objectMapper.getFactory().createGenerator(outputStream);
+        this.fields = fields == null ? EnumSet.allOf(UserField.class) : EnumSet.copyOf(fields);
+        this.generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    }
+
+    @Override
+    public void accept(UserResponse user) {
+        try {
+            generator.writeStartObject();
+            generator.writeNumberField("id", user.getId());
+            if (fields.contains(UserField.NAME)) {
+                generator.writeStringField(UserField.NAME.jsonName(), user.getName());
+            }
+            if (fields.contains(UserField.EMAIL)) {
+                generator.writeStringField(UserField.EMAIL.jsonName(), user.getEmail());
+            }
+            if (fields.contains(UserField.CREATED_AT)) {
+                generator.writeStringField(UserField.CREATED_AT.jsonName(), user.getCreatedAt());
+            }
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+
+            // The first line goes out immediately, after that the output is flushed in chunks
+            if (++written == 1 || written % FLUSH_EVERY == 0) {
+                generator.flush();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    long finish() throws IOException {
+        generator.close();
+        return written;
+    }
+}
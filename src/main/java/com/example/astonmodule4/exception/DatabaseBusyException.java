@@ -0,0 +1,9 @@
+package com.example.astonmodule4.exception;
+
+import java.time.Duration;
+
+public class DatabaseBusyException extends RuntimeException {
+    public DatabaseBusyException(Duration waited) {
+        super("No database connection became available within " + waited.toMillis() + " ms");
+    }
+}
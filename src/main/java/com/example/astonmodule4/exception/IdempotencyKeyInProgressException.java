@@ -0,0 +1,7 @@
+package com.example.astonmodule4.exception;
+
+public class IdempotencyKeyInProgressException extends RuntimeException {
+    public IdempotencyKeyInProgressException(String key) {
+        super("A request with idempotency key " + key + " is still in progress");
+    }
+}
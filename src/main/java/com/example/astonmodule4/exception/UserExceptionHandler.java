@@ -3,6 +3,10 @@ package com.example.astonmodule4.exception;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
+import org.postgresql.util.PSQLException;
+import org.postgresql.util.ServerErrorMessage;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.MethodArgumentNotValidException;
@@ -11,10 +15,14 @@ import org.springframework.web.bind.annotation.RestControllerAdvice;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 @RestControllerAdvice
 @Slf4j
 public class UserExceptionHandler {
+    private static final String EMAIL_UNIQUE_INDEX = "user_table_email_key";
+    private static final Pattern DUPLICATE_EMAIL_DETAIL = Pattern.compile("Key \\(email\\)=\\((.*)\\) already exists\\.");
 
     @ExceptionHandler(UserNotFoundException.class)
     public ResponseEntity<ErrorResponse> handleUserNotFound(UserNotFoundException ex) {
@@ -30,6 +38,43 @@ public class UserExceptionHandler {
         return new ResponseEntity<>(error, HttpStatus.CONFLICT);
     }
 
+    @ExceptionHandler(UserVersionConflictException.class)
+    public ResponseEntity<ErrorResponse> handleUserVersionConflict(UserVersionConflictException ex) {
+        log.warn("User version conflict: {}", ex.getMessage());
+        ErrorResponse error = new ErrorResponse("PRECONDITION_FAILED", ex.getMessage());
+        return new ResponseEntity<>(error, HttpStatus.PRECONDITION_FAILED);
+    }
+
+    @ExceptionHandler(DatabaseBusyException.class)
+    public ResponseEntity<ErrorResponse> handleDatabaseBusy(DatabaseBusyException ex) {
+        log.warn("Request rejected: {}", ex.getMessage());
+        ErrorResponse error = new ErrorResponse("SERVICE_UNAVAILABLE", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(error);
+    }
+
+    /**
+     * Only a violation of the email unique index is a conflict with another user; anything else the database
+     * rejected (a value too long for its column, a NOT NULL) means the request itself was invalid.
+     */
+    @ExceptionHandler(DataIntegrityViolationException.class)
+    public ResponseEntity<ErrorResponse> handleDataIntegrityViolation(DataIntegrityViolationException ex) {
+        ServerErrorMessage serverError = findServerError(ex);
+        if (serverError != null && EMAIL_UNIQUE_INDEX.equals(serverError.getConstraint())) {
+            Matcher matcher = DUPLICATE_EMAIL_DETAIL.matcher(serverError.getDetail() != null ? serverError.getDetail() : "");
+            if (matcher.matches()) {
+                return handleUserAlreadyExists(new UserAlreadyExistsException(matcher.group(1)));
+            }
+            log.warn("User already exists: {}", serverError.getMessage());
+            ErrorResponse error = new ErrorResponse("CONFLICT", "User with this email already exists");
+            return new ResponseEntity<>(error, HttpStatus.CONFLICT);
+        }
+        log.warn("Data integrity violation: {}", ex.getMostSpecificCause().getMessage());
+        ErrorResponse error = new ErrorResponse("BAD_REQUEST", "Data integrity violation");
+        return new ResponseEntity<>(error, HttpStatus.BAD_REQUEST);
+    }
+
     @ExceptionHandler(ValidationException.class)
     public ResponseEntity<ErrorResponse> handleValidation(ValidationException ex) {
         log.warn("Validation error: {}", ex.getMessage());
@@ -54,6 +99,24 @@ public class UserExceptionHandler {
         return new ResponseEntity<>(error, HttpStatus.INTERNAL_SERVER_ERROR);
     }
 
+    /**
+     * Whether the database rejected a write because the email is already taken, as opposed to any other
+     * constraint.
+     */
+    public static boolean isDuplicateEmail(DataIntegrityViolationException ex) {
+        ServerErrorMessage serverError = findServerError(ex);
+        return serverError != null && EMAIL_UNIQUE_INDEX.equals(serverError.getConstraint());
+    }
+
+    private static ServerErrorMessage findServerError(Throwable ex) {
+        for (Throwable cause = ex; cause != null; cause = cause.getCause()) {
+            if (cause instanceof PSQLException psqlException && psqlException.getServerErrorMessage() != null) {
+                return psqlException.getServerErrorMessage();
+            }
+        }
+        return null;
+    }
+
     @Data
     @AllArgsConstructor
     public static class ErrorResponse {
@@ -0,0 +1,7 @@
+package com.example.astonmodule4.exception;
+
+public class UserVersionConflictException extends RuntimeException {
+    public UserVersionConflictException(Long id) {
+        super("User with ID " + id + " has been modified by another request");
+    }
+}
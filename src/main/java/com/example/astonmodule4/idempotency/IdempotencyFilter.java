@@ -0,0 +1,215 @@
+package com.example.astonmodule4.idempotency;
+
+import com.example.astonmodule4.exception.IdempotencyKeyInProgressException;
+import com.example.astonmodule4.exception.IdempotencyKeyReuseException;
+import com.example.astonmodule4.exception.UserExceptionHandler.ErrorResponse;
+import com.example.astonmodule4.model.IdempotentResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Idempotency-Key support for {@code POST /api/users}. The first request with a key runs and its response
+ * is recorded in the {@link IdempotencyStore}; retries with the same key and body get that response
+ * replayed, marked with {@code Idempotent-Replayed: true}, and concurrent ones wait for it. Reusing a key
+ * for a different body is answered with 422, a retry that gives up waiting with 409. The body is buffered
+ * to be fingerprinted, so one larger than the configured maximum is refused with 413 before it is read.
+ */
+@Slf4j
+public class IdempotencyFilter extends OncePerRequestFilter {
+    public static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+    private static final String USERS_PATH = "/api/users";
+    private static final int MAX_KEY_LENGTH = 255;
+
+    private final IdempotencyStore store;
+    private final int maxBodySize;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * @param maxBodySize largest request body, in bytes, that is buffered for fingerprinting
+     */
+    public IdempotencyFilter(IdempotencyStore store, int maxBodySize, ObjectMapper objectMapper,
+                             MeterRegistry meterRegistry) {
+        this.store = store;
+        this.maxBodySize = maxBodySize;
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !HttpMethod.POST.matches(request.getMethod())
+                || !USERS_PATH.equals(request.getRequestURI().substring(request.getContextPath().length()))
+                || request.getHeader(IDEMPOTENCY_KEY_HEADER) == null;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        String key = request.getHeader(IDEMPOTENCY_KEY_HEADER).trim();
+        if (key.isEmpty() || key.length() > MAX_KEY_LENGTH) {
+            reject(response, HttpStatus.BAD_REQUEST, "BAD_REQUEST",
+                    IDEMPOTENCY_KEY_HEADER + " must have 1 to " + MAX_KEY_LENGTH + " characters", "invalid");
+            return;
+        }
+        // Content-Length may be absent or wrong, so the read itself stops one byte past the limit
+        byte[] body = request.getContentLengthLong() <= maxBodySize
+                ? request.getInputStream().readNBytes(maxBodySize + 1)
+                : null;
+        if (body == null || body.length > maxBodySize) {
+            reject(response, HttpStatus.PAYLOAD_TOO_LARGE, "PAYLOAD_TOO_LARGE",
+                    "Request body must not exceed " + maxBodySize + " bytes", "too_large");
+            return;
+        }
+        String fingerprint = fingerprint(request, body);
+
+        IdempotentResponse recorded;
+        try {
+            recorded = store.claim(key, fingerprint);
+        } catch (IdempotencyKeyReuseException e) {
+            log.warn("Idempotency key reused: {}", e.getMessage());
+            reject(response, HttpStatus.UNPROCESSABLE_ENTITY, "UNPROCESSABLE_ENTITY", e.getMessage(), "reused");
+            return;
+        } catch (IdempotencyKeyInProgressException e) {
+            reject(response, HttpStatus.CONFLICT, "CONFLICT", e.getMessage(), "in_progress");
+            return;
+        }
+        if (recorded != null) {
+            count("replayed");
+            replay(response, recorded);
+            return;
+        }
+
+        count("executed");
+        ContentCachingResponseWrapper responseWrapper = new ContentCachingResponseWrapper(response);
+        try {
+            filterChain.doFilter(new CachedBodyRequest(request, body), responseWrapper);
+        } catch (IOException | ServletException | RuntimeException e) {
+            store.abandon(key, e);
+            throw e;
+        }
+        store.complete(key, new IdempotentResponse(fingerprint, responseWrapper.getStatus(),
+                responseWrapper.getContentType(), responseWrapper.getContentAsByteArray()));
+        responseWrapper.copyBodyToResponse();
+    }
+
+    private static void replay(HttpServletResponse response, IdempotentResponse recorded) throws IOException {
+        response.setStatus(recorded.status());
+        response.setHeader(REPLAYED_HEADER, "true");
+        if (recorded.contentType() != null) {
+            response.setContentType(recorded.contentType());
+        }
+        response.setContentLength(recorded.body().length);
+        response.getOutputStream().write(recorded.body());
+    }
+
+    // Same key, same request: the method and path are included so that a key is never shared across endpoints
+    private static String fingerprint(HttpServletRequest request, byte[] body) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(request.getMethod().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) ' ');
+            digest.update(request.getRequestURI().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) '\n');
+            return HexFormat.of().formatHex(digest.digest(body));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private void reject(HttpServletResponse response, HttpStatus status, String code, String message, String outcome)
+            throws IOException {
+        count(outcome);
+        response.setStatus(status.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(), new ErrorResponse(code, message));
+    }
+
+    private void count(String outcome) {
+        meterRegistry.counter("http.server.requests.idempotency", "outcome", outcome).increment();
+    }
+
+    /**
+     * The request with its body already read, so that it can be fingerprinted before the handler reads it.
+     */
+    private static class CachedBodyRequest extends HttpServletRequestWrapper {
+        private final byte[] body;
+
+        CachedBodyRequest(HttpServletRequest request, byte[] body) {
+            super(request);
+            this.body = body;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            ByteArrayInputStream input = new ByteArrayInputStream(body);
+            return new ServletInputStream() {
+                @Override
+                public boolean isFinished() {
+                    return input.available() == 0;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                @Override
+                public void setReadListener(ReadListener readListener) {
+                    throw new UnsupportedOperationException("Body is already buffered");
+                }
+
+                @Override
+                public int read() {
+                    return input.read();
+                }
+
+                @Override
+                public int read(byte[] buffer, int offset, int length) {
+                    return input.read(buffer, offset, length);
+                }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() {
+            String encoding = getCharacterEncoding();
+            return new BufferedReader(new InputStreamReader(getInputStream(),
+                    encoding != null ? Charset.forName(encoding) : StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public int getContentLength() {
+            return body.length;
+        }
+
+        @Override
+        public long getContentLengthLong() {
+            return body.length;
+        }
+    }
+}
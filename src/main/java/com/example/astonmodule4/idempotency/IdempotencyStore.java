@@ -0,0 +1,186 @@
+package com.example.astonmodule4.idempotency;
+
+import com.example.astonmodule4.exception.IdempotencyKeyInProgressException;
+import com.example.astonmodule4.exception.IdempotencyKeyReuseException;
+import com.example.astonmodule4.model.IdempotentResponse;
+import com.example.astonmodule4.repository.IdempotencyKeyRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Responses by Idempotency-Key. Every key maps to a future in a bounded Caffeine cache that expires
+ * entries {@code ttl} after the key was claimed: requests that find a future wait on it instead of
+ * running again, for at most {@code wait-timeout}. With {@code app.idempotency.store=postgres} the
+ * claim and the response also go through the {@code idempotency_keys} table, so retries landing on
+ * another node are deduplicated too. A node takes over a shared claim only once it is older than
+ * {@code lease}, which must outlast any request: the owner is then assumed to have died.
+ * <p>
+ * Responses with a 5xx status are handed to the requests already waiting but not kept, so later
+ * retries run again.
+ */
+@Component
+@Slf4j
+public class IdempotencyStore {
+    private static final long SHARED_POLL_INTERVAL_MILLIS = 50;
+
+    private final Cache<String, CompletableFuture<IdempotentResponse>> responses;
+    private final IdempotencyKeyRepository repository;
+    private final Duration ttl;
+    private final Duration waitTimeout;
+    private final Duration lease;
+
+    public IdempotencyStore(IdempotencyKeyRepository repository,
+                            @Value("${app.idempotency.store:memory}") String store,
+                            @Value("${app.idempotency.maximum-size:100000}") long maximumSize,
+                            @Value("${app.idempotency.ttl:24h}") Duration ttl,
+                            @Value("${app.idempotency.wait-timeout:10s}") Duration waitTimeout,
+                            @Value("${app.idempotency.lease:5m}") Duration lease) {
+        if (!"memory".equals(store) && !"postgres".equals(store)) {
+            throw new IllegalArgumentException("app.idempotency.store must be memory or postgres, got " + store);
+        }
+        this.responses = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .build();
+        this.repository = "postgres".equals(store) ? repository : null;
+        this.ttl = ttl;
+        this.waitTimeout = waitTimeout;
+        this.lease = lease;
+        log.info("Idempotency store initialized: store={}, maximumSize={}, ttl={}, lease={}", store, maximumSize, ttl, lease);
+    }
+
+    /**
+     * @return the response to replay, or {@code null} if the caller now owns {@code key} and must finish
+     * it with {@link #complete} or {@link #abandon}
+     * @throws IdempotencyKeyReuseException      if the key belongs to a request with another fingerprint
+     * @throws IdempotencyKeyInProgressException if the owner did not finish within the wait timeout
+     */
+    public IdempotentResponse claim(String key, String fingerprint) {
+        long deadline = System.nanoTime() + waitTimeout.toNanos();
+        while (true) {
+            CompletableFuture<IdempotentResponse> claimed = new CompletableFuture<>();
+            CompletableFuture<IdempotentResponse> existing = responses.asMap().putIfAbsent(key, claimed);
+            if (existing == null) {
+                return claimShared(key, fingerprint, claimed, deadline);
+            }
+            try {
+                return verified(key, existing.get(deadline - System.nanoTime(), TimeUnit.NANOSECONDS), fingerprint);
+            } catch (ExecutionException e) {
+                // The owner failed and released the key; try to claim it ourselves
+            } catch (TimeoutException e) {
+                throw new IdempotencyKeyInProgressException(key);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IdempotencyKeyInProgressException(key);
+            }
+        }
+    }
+
+    /**
+     * Records the response of the owner of {@code key}. A failure to write it to the shared store is logged
+     * and not passed on: the request itself has succeeded, local retries are still answered from memory, and
+     * the shared claim is taken over by other nodes once its lease expires.
+     */
+    public void complete(String key, IdempotentResponse response) {
+        boolean keep = response.status() < 500;
+        try {
+            if (repository != null) {
+                if (keep) {
+                    repository.complete(key, response);
+                } else {
+                    repository.delete(key);
+                }
+            }
+        } catch (RuntimeException e) {
+            log.warn("Could not record the response for idempotency key {}", key, e);
+        } finally {
+            CompletableFuture<IdempotentResponse> future = responses.getIfPresent(key);
+            if (future != null) {
+                if (!keep) {
+                    responses.asMap().remove(key, future);
+                }
+                future.complete(response);
+            }
+        }
+    }
+
+    public void abandon(String key, Throwable cause) {
+        try {
+            if (repository != null) {
+                repository.delete(key);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Could not release idempotency key {}", key, e);
+        } finally {
+            CompletableFuture<IdempotentResponse> future = responses.asMap().remove(key);
+            if (future != null) {
+                future.completeExceptionally(cause);
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.idempotency.cleanup-interval-ms:60000}")
+    public void deleteExpired() {
+        if (repository != null) {
+            int deleted = repository.deleteExpired(ttl);
+            if (deleted > 0) {
+                log.debug("Deleted {} expired idempotency keys", deleted);
+            }
+        }
+    }
+
+    private IdempotentResponse claimShared(String key, String fingerprint,
+                                           CompletableFuture<IdempotentResponse> claimed, long deadline) {
+        if (repository == null) {
+            return null;
+        }
+        try {
+            while (!repository.claim(key, fingerprint, lease, ttl)) {
+                Optional<IdempotentResponse> completed = repository.findCompleted(key, ttl);
+                if (completed.isPresent()) {
+                    claimed.complete(completed.get());
+                    return verified(key, completed.get(), fingerprint);
+                }
+                if (System.nanoTime() > deadline) {
+                    throw new IdempotencyKeyInProgressException(key);
+                }
+                Thread.sleep(SHARED_POLL_INTERVAL_MILLIS);
+            }
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            IdempotencyKeyInProgressException inProgress = new IdempotencyKeyInProgressException(key);
+            releaseLocal(key, claimed, inProgress);
+            throw inProgress;
+        } catch (RuntimeException e) {
+            if (!claimed.isDone()) {
+                releaseLocal(key, claimed, e);
+            }
+            throw e;
+        }
+    }
+
+    // Only the local future: the shared row belongs to whoever claimed it on another node
+    private void releaseLocal(String key, CompletableFuture<IdempotentResponse> claimed, Throwable cause) {
+        responses.asMap().remove(key, claimed);
+        claimed.completeExceptionally(cause);
+    }
+
+    private static IdempotentResponse verified(String key, IdempotentResponse response, String fingerprint) {
+        if (!response.fingerprint().equals(fingerprint)) {
+            throw new IdempotencyKeyReuseException(key);
+        }
+        return response;
+    }
+}
@@ -1,14 +1,19 @@
 package com.example.astonmodule4.mapper;
 
 import com.example.astonmodule4.model.User;
+import com.example.astonmodule4.model.UserChange;
+import com.example.astonmodule4.model.UserField;
+import com.example.astonmodule4.model.UserView;
 import com.example.astonmodule4.model.dto.request.CreateUserRequest;
 import com.example.astonmodule4.model.dto.request.UpdateUserRequest;
+import com.example.astonmodule4.model.dto.response.UserChangeResponse;
 import com.example.astonmodule4.model.dto.response.UserResponse;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Component;
 
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.Set;
 
 @Component
 @RequiredArgsConstructor
@@ -22,14 +27,54 @@ public class UserMapper {
                 .name(user.getName())
                 .email(user.getEmail())
                 .createdAt(formatDateTime(user.getCreated_at()))
+                .version(user.getVersion())
+                .updatedAt(user.getUpdated_at())
+                .build();
+    }
+
+    public UserResponse toResponse(UserView user) {
+        return UserResponse.builder()
+                .id(user.id())
+                .name(user.name())
+                .email(user.email())
+                .createdAt(formatDateTime(user.createdAt()))
+                .version(user.version())
+                .updatedAt(user.updatedAt())
                 .build();
     }
 
     public User fromCreateRequest(CreateUserRequest request) {
+        LocalDateTime now = LocalDateTime.now();
         return User.builder()
                 .name(request.getName())
                 .email(request.getEmail())
-                .created_at(LocalDateTime.now())
+                .created_at(now)
+                .updated_at(now)
+                .build();
+    }
+
+    /**
+     * Copy of {@code user} with only the selected fields; the version stays for the entity tag.
+     */
+    public UserResponse select(UserResponse user, Set<UserField> fields) {
+        return UserResponse.builder()
+                .id(user.getId())
+                .name(fields.contains(UserField.NAME) ? user.getName() : null)
+                .email(fields.contains(UserField.EMAIL) ? user.getEmail() : null)
+                .createdAt(fields.contains(UserField.CREATED_AT) ? user.getCreatedAt() : null)
+                .version(user.getVersion())
+                .updatedAt(user.getUpdatedAt())
+                .build();
+    }
+
+    public UserChangeResponse toChangeResponse(UserChange change) {
+        return UserChangeResponse.builder()
+                .type(change.type())
+                .userId(change.userId())
+                .name(change.name())
+                .email(change.email())
+                .version(change.version())
+                .changedAt(formatDateTime(change.changedAt()))
                 .build();
     }
 
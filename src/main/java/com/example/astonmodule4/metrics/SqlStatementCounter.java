@@ -0,0 +1,89 @@
+package com.example.astonmodule4.metrics;
+
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.listener.MethodExecutionContext;
+import net.ttddyy.dsproxy.listener.MethodExecutionListener;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+
+import java.sql.ResultSet;
+import java.util.List;
+
+/**
+ * Datasource-proxy listener that counts the JDBC statements executed by the current request and the rows
+ * they read or changed. Counting only happens between {@link #start()} and {@link #stop()} on the same
+ * thread, so statements of background work (cache invalidation, SSE polling) and of streaming responses
+ * written on other threads are not attributed to any request.
+ */
+public class SqlStatementCounter implements QueryExecutionListener, MethodExecutionListener {
+    private static final ThreadLocal<Counts> CURRENT = new ThreadLocal<>();
+
+    public static final class Counts {
+        private long statements;
+        private long rows;
+
+        public long statements() {
+            return statements;
+        }
+
+        public long rows() {
+            return rows;
+        }
+    }
+
+    public static Counts start() {
+        Counts counts = new Counts();
+        CURRENT.set(counts);
+        return counts;
+    }
+
+    public static void stop() {
+        CURRENT.remove();
+    }
+
+    @Override
+    public void beforeQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+    }
+
+    @Override
+    public void afterQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        Counts counts = CURRENT.get();
+        if (counts == null) {
+            return;
+        }
+        // A batch is one round trip however many parameter sets it carries
+        counts.statements++;
+        counts.rows += affectedRows(execInfo.getResult());
+    }
+
+    @Override
+    public void beforeMethod(MethodExecutionContext executionContext) {
+    }
+
+    @Override
+    public void afterMethod(MethodExecutionContext executionContext) {
+        Counts counts = CURRENT.get();
+        if (counts != null && executionContext.getTarget() instanceof ResultSet
+                && "next".equals(executionContext.getMethod().getName())
+                && Boolean.TRUE.equals(executionContext.getResult())) {
+            counts.rows++;
+        }
+    }
+
+    private static long affectedRows(Object result) {
+        if (result instanceof Number updated) {
+            return Math.max(updated.longValue(), 0);
+        }
+        long rows = 0;
+        if (result instanceof int[] batch) {
+            for (int updated : batch) {
+                rows += Math.max(updated, 0);
+            }
+        } else if (result instanceof long[] batch) {
+            for (long updated : batch) {
+                rows += Math.max(updated, 0);
+            }
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,9 @@
+package com.example.astonmodule4.model;
+
+/**
+ * Response recorded for an Idempotency-Key and replayed to retries carrying the same request.
+ *
+ * @param fingerprint hash of the request the response belongs to
+ */
+public record IdempotentResponse(String fingerprint, int status, String contentType, byte[] body) {
+}
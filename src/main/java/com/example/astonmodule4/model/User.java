@@ -16,7 +16,8 @@ import java.time.LocalDateTime;
 @Builder
 public class User {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "user_seq")
+    @SequenceGenerator(name = "user_seq", sequenceName = "user_table_seq", allocationSize = 50)
     @Column(name = "id")
     private Long id;
     @Column(name = "name")
@@ -25,5 +26,10 @@ public class User {
     private String email;
     @Column(name = "created_at")
     private LocalDateTime created_at;
+    @Column(name = "updated_at")
+    private LocalDateTime updated_at;
+    @Version
+    @Column(name = "version")
+    private Long version;
 
 }
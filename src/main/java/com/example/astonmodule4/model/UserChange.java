@@ -0,0 +1,10 @@
+package com.example.astonmodule4.model;
+
+import java.time.LocalDateTime;
+
+/**
+ * Row of the {@code user_changes} log.
+ */
+public record UserChange(UserChangePosition position, Long userId, UserChangeType type, String name, String email,
+                         Long version, LocalDateTime changedAt) {
+}
@@ -0,0 +1,44 @@
+package com.example.astonmodule4.model;
+
+import java.util.Comparator;
+
+/**
+ * Position in the {@code user_changes} log. Its token form {@code <txId>.<seq>} is what clients get back as
+ * {@code nextToken} of the change feed and as the event id of the change stream.
+ */
+public record UserChangePosition(long txId, long seq) implements Comparable<UserChangePosition> {
+    public static final UserChangePosition START = new UserChangePosition(0L, 0L);
+
+    private static final char SEPARATOR = '.';
+    private static final Comparator<UserChangePosition> ORDER = Comparator
+            .comparingLong(UserChangePosition::txId)
+            .thenComparingLong(UserChangePosition::seq);
+
+    /**
+     * @throws IllegalArgumentException if the token is not of the form {@code <txId>.<seq>}
+     */
+    public static UserChangePosition parse(String token) {
+        int separator = token.indexOf(SEPARATOR);
+        if (separator > 0) {
+            try {
+                long txId = Long.parseLong(token.substring(0, separator));
+                long seq = Long.parseLong(token.substring(separator + 1));
+                if (txId >= 0 && seq >= 0) {
+                    return new UserChangePosition(txId, seq);
+                }
+            } catch (NumberFormatException e) {
+                // reported below
+            }
+        }
+        throw new IllegalArgumentException("Invalid change token: " + token);
+    }
+
+    public String token() {
+        return txId + String.valueOf(SEPARATOR) + seq;
+    }
+
+    @Override
+    public int compareTo(UserChangePosition other) {
+        return ORDER.compare(this, other);
+    }
+}
@@ -0,0 +1,10 @@
+package com.example.astonmodule4.model;
+
+public enum UserChangeType {
+    CREATED,
+    UPDATED,
+    /**
+     * Tombstone: only the user id and the last version are known.
+     */
+    DELETED
+}
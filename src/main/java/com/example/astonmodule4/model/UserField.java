@@ -0,0 +1,28 @@
+package com.example.astonmodule4.model;
+
+/**
+ * Fields of a user that clients can select with {@code ?fields=}. Each maps to exactly one column,
+ * so a sparse fieldset also narrows the SQL projection.
+ */
+public enum UserField {
+    ID("id", "id"),
+    NAME("name", "name"),
+    EMAIL("email", "email"),
+    CREATED_AT("createdAt", "created_at");
+
+    private final String jsonName;
+    private final String column;
+
+    UserField(String jsonName, String column) {
+        this.jsonName = jsonName;
+        this.column = column;
+    }
+
+    public String jsonName() {
+        return jsonName;
+    }
+
+    public String column() {
+        return column;
+    }
+}
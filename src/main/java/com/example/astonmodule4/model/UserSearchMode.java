@@ -0,0 +1,12 @@
+package com.example.astonmodule4.model;
+
+public enum UserSearchMode {
+    /**
+     * Name or email starts with the query; served by the {@code text_pattern_ops} indexes.
+     */
+    PREFIX,
+    /**
+     * Name or email contains the query; served by the {@code pg_trgm} indexes.
+     */
+    CONTAINS
+}
@@ -0,0 +1,9 @@
+package com.example.astonmodule4.model;
+
+import java.time.LocalDateTime;
+
+/**
+ * Version of a user row, enough to answer conditional requests without loading the user itself.
+ */
+public record UserVersion(Long id, Long version, LocalDateTime updatedAt) {
+}
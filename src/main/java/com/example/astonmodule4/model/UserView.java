@@ -0,0 +1,11 @@
+package com.example.astonmodule4.model;
+
+import java.time.LocalDateTime;
+
+/**
+ * Read-only projection of {@link User}, selected with a JPQL constructor expression so that
+ * no managed entity (and no dirty-checking snapshot) is created.
+ */
+public record UserView(Long id, String name, String email, LocalDateTime createdAt, Long version,
+                       LocalDateTime updatedAt) {
+}
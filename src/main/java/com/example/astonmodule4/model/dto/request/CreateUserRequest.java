@@ -18,5 +18,6 @@ public class CreateUserRequest {
 
     @NotBlank(message = "Email не может быть пустым")
     @Email(message = "Некорректный формат email")
+    @Size(max = 255, message = "Email должен быть не длиннее 255 символов")
     private String email;
 }
@@ -0,0 +1,19 @@
+package com.example.astonmodule4.model.dto.request;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class CreateUsersBatchRequest {
+    @NotEmpty(message = "Список пользователей не может быть пустым")
+    @Size(max = 5000, message = "За один запрос можно создать не более 5000 пользователей")
+    private List<@Valid CreateUserRequest> users;
+}
@@ -15,5 +15,6 @@ public class UpdateUserRequest {
     private String name;
 
     @Email(message = "Некорректный формат email")
+    @Size(max = 255, message = "Email должен быть не длиннее 255 символов")
     private String email;
 }
@@ -0,0 +1,44 @@
+package com.example.astonmodule4.model.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class CreateUsersBatchResponse {
+
+    private int created;
+
+    private int conflicts;
+
+    private List<ItemResult> results;
+
+    public enum Status {
+        CREATED,
+        CONFLICT
+    }
+
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class ItemResult {
+        private int index;
+        private Status status;
+        private Long id;
+        private String email;
+
+        public static ItemResult created(int index, Long id, String email) {
+            return new ItemResult(index, Status.CREATED, id, email);
+        }
+
+        public static ItemResult conflict(int index, String email) {
+            return new ItemResult(index, Status.CONFLICT, null, email);
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.astonmodule4.model.dto.response;
+
+import com.example.astonmodule4.model.UserChangeType;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class UserChangeResponse {
+
+    private UserChangeType type;
+
+    private Long userId;
+
+    /**
+     * State of the user after the change; {@code null} for {@link UserChangeType#DELETED}.
+     */
+    private String name;
+
+    private String email;
+
+    private Long version;
+
+    private String changedAt;
+
+}
@@ -0,0 +1,25 @@
+package com.example.astonmodule4.model.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class UserChangesResponse {
+
+    private List<UserChangeResponse> changes;
+
+    /**
+     * Token to pass as {@code since} on the next call; equals the given token when nothing changed.
+     */
+    private String nextToken;
+
+    private boolean hasMore;
+
+}
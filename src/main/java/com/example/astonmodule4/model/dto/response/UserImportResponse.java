@@ -0,0 +1,35 @@
+package com.example.astonmodule4.model.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class UserImportResponse {
+
+    private long totalRows;
+
+    private long acceptedRows;
+
+    private long rejectedRows;
+
+    private long insertedRows;
+
+    /**
+     * Строки, прошедшие валидацию, но не вставленные из-за уже существующего email.
+     */
+    private long skippedRows;
+
+    private long elapsedMillis;
+
+    private long rowsPerSecond;
+
+    private List<String> errors;
+
+}
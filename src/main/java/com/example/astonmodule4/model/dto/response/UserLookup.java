@@ -0,0 +1,23 @@
+package com.example.astonmodule4.model.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class UserLookup {
+
+    /**
+     * Found users in the requested order, duplicates removed.
+     */
+    private List<UserResponse> users;
+
+    private List<Long> missingIds;
+
+}
@@ -0,0 +1,25 @@
+package com.example.astonmodule4.model.dto.response;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+import org.springframework.hateoas.EntityModel;
+import org.springframework.hateoas.RepresentationModel;
+
+import java.util.List;
+
+@Data
+@EqualsAndHashCode(callSuper = true)
+@AllArgsConstructor
+@NoArgsConstructor
+public class UserLookupResponse extends RepresentationModel<UserLookupResponse> {
+
+    @JsonProperty("users")
+    private List<EntityModel<UserResponse>> users;
+
+    @JsonProperty("missingIds")
+    private List<Long> missingIds;
+
+}
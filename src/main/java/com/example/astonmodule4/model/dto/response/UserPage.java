@@ -0,0 +1,30 @@
+package com.example.astonmodule4.model.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class UserPage {
+
+    private List<UserResponse> users;
+
+    private int limit;
+
+    /**
+     * ID последнего пользователя на странице, если за ней есть еще записи; иначе {@code null}.
+     */
+    private Long nextCursor;
+
+    /**
+     * Entity tag of the page, derived from the ids and versions of its rows and of the row after it.
+     */
+    private String etag;
+
+}
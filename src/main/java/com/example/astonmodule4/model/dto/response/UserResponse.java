@@ -1,5 +1,7 @@
 package com.example.astonmodule4.model.dto.response;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import jakarta.validation.constraints.Email;
 import jakarta.validation.constraints.NotBlank;
@@ -18,6 +20,7 @@ import java.time.LocalDateTime;
 @AllArgsConstructor
 @NoArgsConstructor
 @Relation(collectionRelation = "users", itemRelation = "user")
+@JsonInclude(JsonInclude.Include.NON_NULL)
 public class UserResponse extends RepresentationModel<UserResponse> {
 
     @JsonProperty("id")
@@ -32,4 +35,10 @@ public class UserResponse extends RepresentationModel<UserResponse> {
     @JsonProperty("createdAt")
     private String createdAt;
 
+    @JsonIgnore
+    private Long version;
+
+    @JsonIgnore
+    private LocalDateTime updatedAt;
+
 }
@@ -0,0 +1,104 @@
+package com.example.astonmodule4.repository;
+
+import com.example.astonmodule4.model.IdempotentResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * The {@code idempotency_keys} table. A key is claimed by inserting a row without a response; the claim
+ * can be taken over once it is older than {@code staleAfter} (the claiming node died) or the whole row
+ * is older than {@code ttl}. Only the first response is recorded, so an owner that finishes after its
+ * claim was taken over cannot replace the response of the node that took it over.
+ * Ages are computed with the database clock, so node clocks do not matter.
+ */
+@Repository
+@RequiredArgsConstructor
+public class IdempotencyKeyRepository {
+    private static final String CLAIM_SQL = """
+            INSERT INTO idempotency_keys (idempotency_key, fingerprint)
+            VALUES (:key, :fingerprint)
+            ON CONFLICT (idempotency_key) DO UPDATE
+                SET fingerprint = EXCLUDED.fingerprint, status = NULL, content_type = NULL, body = NULL,
+                    created_at = LOCALTIMESTAMP
+                WHERE (idempotency_keys.status IS NULL
+                           AND idempotency_keys.created_at < LOCALTIMESTAMP - make_interval(secs => :staleSeconds))
+                   OR idempotency_keys.created_at < LOCALTIMESTAMP - make_interval(secs => :ttlSeconds)""";
+
+    private static final String FIND_COMPLETED_SQL = """
+            SELECT fingerprint, status, content_type, body
+            FROM idempotency_keys
+            WHERE idempotency_key = :key
+              AND status IS NOT NULL
+              AND created_at >= LOCALTIMESTAMP - make_interval(secs => :ttlSeconds)""";
+
+    private static final String COMPLETE_SQL = """
+            UPDATE idempotency_keys
+            SET status = :status, content_type = :contentType, body = :body
+            WHERE idempotency_key = :key
+              AND status IS NULL""";
+
+    private static final String DELETE_SQL = """
+            DELETE FROM idempotency_keys
+            WHERE idempotency_key = :key
+              AND status IS NULL""";
+
+    private static final String DELETE_EXPIRED_SQL = """
+            DELETE FROM idempotency_keys
+            WHERE created_at < LOCALTIMESTAMP - make_interval(secs => :ttlSeconds)""";
+
+    private static final RowMapper<IdempotentResponse> RESPONSE_ROW_MAPPER = (resultSet, rowNum) ->
+            new IdempotentResponse(
+                    resultSet.getString("fingerprint"),
+                    resultSet.getInt("status"),
+                    resultSet.getString("content_type"),
+                    resultSet.getBytes("body"));
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    /**
+     * @return {@code true} if the key was free (or its previous claim stale or expired) and is now claimed
+     */
+    public boolean claim(String key, String fingerprint, Duration staleAfter, Duration ttl) {
+        MapSqlParameterSource parameters = new MapSqlParameterSource()
+                .addValue("key", key)
+                .addValue("fingerprint", fingerprint)
+                .addValue("staleSeconds", (double) staleAfter.toMillis() / 1000)
+                .addValue("ttlSeconds", (double) ttl.toMillis() / 1000);
+        return jdbcTemplate.update(CLAIM_SQL, parameters) == 1;
+    }
+
+    public Optional<IdempotentResponse> findCompleted(String key, Duration ttl) {
+        MapSqlParameterSource parameters = new MapSqlParameterSource()
+                .addValue("key", key)
+                .addValue("ttlSeconds", (double) ttl.toMillis() / 1000);
+        List<IdempotentResponse> responses = jdbcTemplate.query(FIND_COMPLETED_SQL, parameters, RESPONSE_ROW_MAPPER);
+        return responses.stream().findFirst();
+    }
+
+    public void complete(String key, IdempotentResponse response) {
+        jdbcTemplate.update(COMPLETE_SQL, new MapSqlParameterSource()
+                .addValue("key", key)
+                .addValue("status", response.status())
+                .addValue("contentType", response.contentType())
+                .addValue("body", response.body()));
+    }
+
+    /**
+     * Releases a claim that has no response yet.
+     */
+    public void delete(String key) {
+        jdbcTemplate.update(DELETE_SQL, new MapSqlParameterSource("key", key));
+    }
+
+    public int deleteExpired(Duration ttl) {
+        return jdbcTemplate.update(DELETE_EXPIRED_SQL,
+                new MapSqlParameterSource("ttlSeconds", (double) ttl.toMillis() / 1000));
+    }
+}
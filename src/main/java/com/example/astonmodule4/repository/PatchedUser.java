@@ -0,0 +1,6 @@
+package com.example.astonmodule4.repository;
+
+import com.example.astonmodule4.model.User;
+
+public record PatchedUser(User user, String previousEmail) {
+}
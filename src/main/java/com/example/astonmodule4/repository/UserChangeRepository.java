@@ -0,0 +1,97 @@
+package com.example.astonmodule4.repository;
+
+import com.example.astonmodule4.model.User;
+import com.example.astonmodule4.model.UserChange;
+import com.example.astonmodule4.model.UserChangePosition;
+import com.example.astonmodule4.model.UserChangeType;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Writes and reads the {@code user_changes} log. Writes join the caller's transaction, so a change is logged
+ * if and only if it commits; updates and deletes log themselves in the same statement, see
+ * {@link UserRepositoryCustomImpl}.
+ * <p>
+ * Reads stop below the xmin of the current snapshot: the oldest transaction still running in the cluster
+ * that has written anything. While one long write transaction is open (a CSV import, which runs as one
+ * transaction from the staging table to the merge, a migration, a forgotten psql session, even in another
+ * database of the cluster), the feed and the SSE stream deliver nothing committed after it started. The
+ * changes are held back, not lost, and arrive once it ends.
+ */
+@Repository
+@RequiredArgsConstructor
+public class UserChangeRepository {
+    private static final String INSERT_SQL = """
+            INSERT INTO user_changes (user_id, operation, name, email, version)
+            VALUES (:userId, :operation, :name, :email, :version)""";
+
+    // Transactions below the snapshot's xmin have all finished, so this part of the log can no longer grow
+    private static final String FIND_AFTER_SQL = """
+            SELECT tx_id, seq, user_id, operation, name, email, version, changed_at
+            FROM user_changes
+            WHERE (tx_id, seq) > (:txId, :seq)
+              AND tx_id < pg_snapshot_xmin(pg_current_snapshot())::text::bigint
+            ORDER BY tx_id, seq
+            LIMIT :limit""";
+
+    private static final String LAST_POSITION_SQL = """
+            SELECT tx_id, seq
+            FROM user_changes
+            WHERE tx_id < pg_snapshot_xmin(pg_current_snapshot())::text::bigint
+            ORDER BY tx_id DESC, seq DESC
+            LIMIT 1""";
+
+    private static final RowMapper<UserChangePosition> POSITION_ROW_MAPPER = (resultSet, rowNum) ->
+            new UserChangePosition(resultSet.getLong("tx_id"), resultSet.getLong("seq"));
+
+    private static final RowMapper<UserChange> CHANGE_ROW_MAPPER = (resultSet, rowNum) -> new UserChange(
+            POSITION_ROW_MAPPER.mapRow(resultSet, rowNum),
+            resultSet.getLong("user_id"),
+            UserChangeType.valueOf(resultSet.getString("operation")),
+            resultSet.getString("name"),
+            resultSet.getString("email"),
+            resultSet.getObject("version", Long.class),
+            resultSet.getObject("changed_at", LocalDateTime.class));
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public void recordCreated(Collection<User> users) {
+        SqlParameterSource[] batch = users.stream()
+                .map(user -> new MapSqlParameterSource()
+                        .addValue("userId", user.getId())
+                        .addValue("operation", UserChangeType.CREATED.name())
+                        .addValue("name", user.getName())
+                        .addValue("email", user.getEmail())
+                        .addValue("version", user.getVersion()))
+                .toArray(SqlParameterSource[]::new);
+        jdbcTemplate.batchUpdate(INSERT_SQL, batch);
+    }
+
+    /**
+     * @return up to {@code limit} changes that come strictly after {@code position}
+     */
+    public List<UserChange> findAfter(UserChangePosition position, int limit) {
+        MapSqlParameterSource parameters = new MapSqlParameterSource()
+                .addValue("txId", position.txId())
+                .addValue("seq", position.seq())
+                .addValue("limit", limit);
+        return jdbcTemplate.query(FIND_AFTER_SQL, parameters, CHANGE_ROW_MAPPER);
+    }
+
+    /**
+     * @return position of the newest change readers can see, or {@link UserChangePosition#START} if there is none
+     */
+    public UserChangePosition findLastPosition() {
+        return jdbcTemplate.query(LAST_POSITION_SQL, POSITION_ROW_MAPPER).stream()
+                .findFirst()
+                .orElse(UserChangePosition.START);
+    }
+}
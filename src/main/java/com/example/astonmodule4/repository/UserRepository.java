@@ -1,9 +1,69 @@
 package com.example.astonmodule4.repository;
 
 import com.example.astonmodule4.model.User;
+import com.example.astonmodule4.model.UserVersion;
+import com.example.astonmodule4.model.UserView;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
-public interface UserRepository extends JpaRepository<User, Long> {
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+public interface UserRepository extends JpaRepository<User, Long>, UserRepositoryCustom {
     boolean existsByEmail(String email);
 
+    @Query("select u.email from User u where u.email in :emails")
+    List<String> findExistingEmails(@Param("emails") Collection<String> emails);
+
+    @Query("select new com.example.astonmodule4.model.UserView(u.id, u.name, u.email, u.created_at, u.version, "
+            + "u.updated_at) "
+            + "from User u where u.id = :id")
+    Optional<UserView> findViewById(@Param("id") Long id);
+
+    @Query("select new com.example.astonmodule4.model.UserView(u.id, u.name, u.email, u.created_at, u.version, "
+            + "u.updated_at) "
+            + "from User u where u.id in :ids")
+    List<UserView> findViewsByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query("select new com.example.astonmodule4.model.UserView(u.id, u.name, u.email, u.created_at, u.version, "
+            + "u.updated_at) "
+            + "from User u where u.id > :after order by u.id")
+    List<UserView> findViewsAfter(@Param("after") Long after, Pageable pageable);
+
+    /**
+     * @param pattern lower-case LIKE pattern, its wildcards escaped with a backslash. The escape character is
+     *                spelled out rather than left to PostgreSQL's default, which a dialect rendering its own
+     *                {@code escape} clause would override
+     */
+    @Query("select new com.example.astonmodule4.model.UserView(u.id, u.name, u.email, u.created_at, u.version, "
+            + "u.updated_at) "
+            + "from User u where u.id > :after "
+            + "and (lower(u.name) like :pattern escape '\\' or lower(u.email) like :pattern escape '\\') "
+            + "order by u.id")
+    List<UserView> searchViewsAfter(@Param("pattern") String pattern, @Param("after") Long after, Pageable pageable);
+
+    @Query("select new com.example.astonmodule4.model.UserVersion(u.id, u.version, u.updated_at) "
+            + "from User u where u.id = :id")
+    Optional<UserVersion> findVersionById(@Param("id") Long id);
+
+    @Query("select new com.example.astonmodule4.model.UserVersion(u.id, u.version, u.updated_at) "
+            + "from User u where u.id > :after order by u.id")
+    List<UserVersion> findVersionsAfter(@Param("after") Long after, Pageable pageable);
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("select new com.example.astonmodule4.model.UserView(u.id, u.name, u.email, u.created_at, u.version, "
+            + "u.updated_at) "
+            + "from User u order by u.id")
+    Stream<UserView> streamAllViews();
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "10000"))
+    @Query("select u.email from User u")
+    Stream<String> streamAllEmails();
 }
@@ -0,0 +1,47 @@
+package com.example.astonmodule4.repository;
+
+import com.example.astonmodule4.model.UserField;
+import com.example.astonmodule4.model.UserView;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+
+public interface UserRepositoryCustom {
+
+    /**
+     * Applies the non-null fields in a single {@code UPDATE ... RETURNING} statement and bumps the version.
+     *
+     * @param expectedVersion version the row must still have, or {@code null} to update any version
+     * @return the updated row with the email it had before, or empty if there is no user with this id
+     * or its version differs from {@code expectedVersion}
+     * @throws org.springframework.dao.DuplicateKeyException if the new email is already taken
+     */
+    Optional<PatchedUser> patchById(Long id, Long expectedVersion, String name, String email);
+
+    /*
+     * Sparse counterparts of the UserView queries in UserRepository. Only the columns of the given fields are
+     * selected, plus id and version; unselected components of the returned views are null.
+     */
+
+    List<UserView> findSparseViewsAfter(Set<UserField> fields, long after, int limit);
+
+    List<UserView> findSparseViewsByIdIn(Set<UserField> fields, Collection<Long> ids);
+
+    /**
+     * @param pattern lower-case LIKE pattern, see {@link UserRepository#searchViewsAfter}
+     */
+    List<UserView> searchSparseViewsAfter(Set<UserField> fields, String pattern, long after, int limit);
+
+    /**
+     * Streams all users ordered by id through a server-side cursor; must run inside a transaction.
+     */
+    void forEachSparseView(Set<UserField> fields, Consumer<UserView> consumer);
+
+    /**
+     * @return the email of the deleted user, or empty if there is no user with this id
+     */
+    Optional<String> deleteByIdReturningEmail(Long id);
+}
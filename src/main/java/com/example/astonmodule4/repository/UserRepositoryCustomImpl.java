@@ -0,0 +1,153 @@
+package com.example.astonmodule4.repository;
+
+import com.example.astonmodule4.model.User;
+import com.example.astonmodule4.model.UserField;
+import com.example.astonmodule4.model.UserView;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+
+@RequiredArgsConstructor
+public class UserRepositoryCustomImpl implements UserRepositoryCustom {
+    static final RowMapper<User> USER_ROW_MAPPER = (resultSet, rowNum) -> User.builder()
+            .id(resultSet.getLong("id"))
+            .name(resultSet.getString("name"))
+            .email(resultSet.getString("email"))
+            .created_at(resultSet.getObject("created_at", LocalDateTime.class))
+            .updated_at(resultSet.getObject("updated_at", LocalDateTime.class))
+            .version(resultSet.getLong("version"))
+            .build();
+
+    // The locked sub-select still sees the row as it was before the update, which yields the previous email.
+    // The row lock lasts for this statement only; a concurrent writer that got there first is detected by
+    // the version predicate, which PostgreSQL re-checks against the latest row once the lock is granted.
+    // The change is logged by the same statement, so it needs no surrounding transaction
+    private static final String PATCH_SQL = """
+            WITH updated AS (
+                UPDATE user_table u
+                SET name       = COALESCE(:name, u.name),
+                    email      = COALESCE(:email, u.email),
+                    updated_at = :updatedAt,
+                    version    = u.version + 1
+                FROM (SELECT id, email
+                      FROM user_table
+                      WHERE id = :id
+                        AND (CAST(:expectedVersion AS BIGINT) IS NULL OR version = :expectedVersion)
+                      FOR UPDATE) previous
+                WHERE u.id = previous.id
+                RETURNING u.id, u.name, u.email, u.created_at, u.updated_at, u.version, previous.email AS previous_email
+            ), logged AS (
+                INSERT INTO user_changes (user_id, operation, name, email, version)
+                SELECT id, 'UPDATED', name, email, version
+                FROM updated
+            )
+            SELECT * FROM updated""";
+
+    private static final String DELETE_SQL = """
+            WITH deleted AS (
+                DELETE FROM user_table WHERE id = :id RETURNING id, email, version
+            ), logged AS (
+                INSERT INTO user_changes (user_id, operation, version)
+                SELECT id, 'DELETED', version
+                FROM deleted
+            )
+            SELECT email FROM deleted""";
+
+    private static final int EXPORT_FETCH_SIZE = 1000;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    @Override
+    public Optional<PatchedUser> patchById(Long id, Long expectedVersion, String name, String email) {
+        MapSqlParameterSource parameters = new MapSqlParameterSource()
+                .addValue("id", id)
+                .addValue("expectedVersion", expectedVersion, Types.BIGINT)
+                .addValue("name", name, Types.VARCHAR)
+                .addValue("email", email, Types.VARCHAR)
+                .addValue("updatedAt", LocalDateTime.now());
+        return jdbcTemplate.query(PATCH_SQL, parameters, (resultSet, rowNum) -> new PatchedUser(
+                        USER_ROW_MAPPER.mapRow(resultSet, rowNum), resultSet.getString("previous_email")))
+                .stream()
+                .findFirst();
+    }
+
+    @Override
+    public List<UserView> findSparseViewsAfter(Set<UserField> fields, long after, int limit) {
+        String sql = selectViews(fields) + " WHERE id > :after ORDER BY id LIMIT :limit";
+        MapSqlParameterSource parameters = new MapSqlParameterSource()
+                .addValue("after", after)
+                .addValue("limit", limit);
+        return jdbcTemplate.query(sql, parameters, (resultSet, rowNum) -> mapView(resultSet, fields));
+    }
+
+    @Override
+    public List<UserView> findSparseViewsByIdIn(Set<UserField> fields, Collection<Long> ids) {
+        String sql = selectViews(fields) + " WHERE id IN (:ids)";
+        return jdbcTemplate.query(sql, new MapSqlParameterSource("ids", ids),
+                (resultSet, rowNum) -> mapView(resultSet, fields));
+    }
+
+    @Override
+    public List<UserView> searchSparseViewsAfter(Set<UserField> fields, String pattern, long after, int limit) {
+        String sql = selectViews(fields)
+                + " WHERE id > :after"
+                + " AND (lower(name) LIKE :pattern ESCAPE '\\' OR lower(email) LIKE :pattern ESCAPE '\\')"
+                + " ORDER BY id LIMIT :limit";
+        MapSqlParameterSource parameters = new MapSqlParameterSource()
+                .addValue("pattern", pattern)
+                .addValue("after", after)
+                .addValue("limit", limit);
+        return jdbcTemplate.query(sql, parameters, (resultSet, rowNum) -> mapView(resultSet, fields));
+    }
+
+    @Override
+    public void forEachSparseView(Set<UserField> fields, Consumer<UserView> consumer) {
+        String sql = selectViews(fields) + " ORDER BY id";
+        jdbcTemplate.getJdbcOperations().query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(sql);
+            statement.setFetchSize(EXPORT_FETCH_SIZE);
+            return statement;
+        }, (RowCallbackHandler) resultSet -> consumer.accept(mapView(resultSet, fields)));
+    }
+
+    // Column names come from the UserField whitelist only, never from the request
+    private static String selectViews(Set<UserField> fields) {
+        StringBuilder sql = new StringBuilder("SELECT id, version");
+        for (UserField field : fields) {
+            if (field != UserField.ID) {
+                sql.append(", ").append(field.column());
+            }
+        }
+        return sql.append(" FROM user_table").toString();
+    }
+
+    private static UserView mapView(ResultSet resultSet, Set<UserField> fields) throws SQLException {
+        return new UserView(
+                resultSet.getLong("id"),
+                fields.contains(UserField.NAME) ? resultSet.getString("name") : null,
+                fields.contains(UserField.EMAIL) ? resultSet.getString("email") : null,
+                fields.contains(UserField.CREATED_AT) ? resultSet.getObject("created_at", LocalDateTime.class) : null,
+                resultSet.getLong("version"),
+                null);
+    }
+
+    @Override
+    public Optional<String> deleteByIdReturningEmail(Long id) {
+        return jdbcTemplate.queryForList(DELETE_SQL, new MapSqlParameterSource("id", id), String.class)
+                .stream()
+                .findFirst();
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.astonmodule4.routing;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * {@code app.datasource.routing.*}: the replicas next to the primary configured by {@code spring.datasource.*}.
+ */
+@Data
+@ConfigurationProperties(prefix = "app.datasource.routing")
+public class DataSourceRoutingProperties {
+    private boolean enabled;
+    private List<Replica> replicas = new ArrayList<>();
+    /**
+     * Replicas lagging further behind the primary get no reads.
+     */
+    private Duration maxLag = Duration.ofSeconds(10);
+    /**
+     * How long a client's reads stay on the primary after it wrote; zero disables read-your-writes.
+     */
+    private Duration readYourWritesWindow = Duration.ofSeconds(5);
+    /**
+     * How long to wait for a replica connection; kept short so a down replica does not stall startup,
+     * the health check or the reads that raced it being marked unhealthy.
+     */
+    private Duration replicaConnectionTimeout = Duration.ofSeconds(1);
+
+    @Data
+    public static class Replica {
+        private String url;
+        private String username;
+        private String password;
+        private Integer maximumPoolSize;
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.astonmodule4.routing;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Sends connections of read-only transactions to a replica of the {@link ReplicaSet} and everything else
+ * to the primary. The read-only flag is only set once the transaction has begun, so this must sit behind
+ * a {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy} that defers taking the
+ * connection to the first statement.
+ * <p>
+ * {@link #pinToPrimary()} routes the current thread's reads to the primary as well, for clients that must
+ * see their own writes.
+ */
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
+    private static final ThreadLocal<Boolean> PINNED_TO_PRIMARY = new ThreadLocal<>();
+
+    private final ReplicaSet replicaSet;
+
+    public ReadWriteRoutingDataSource(ReplicaSet replicaSet) {
+        this.replicaSet = replicaSet;
+        setTargetDataSources(replicaSet.getTargets());
+        setDefaultTargetDataSource(replicaSet.getPrimary());
+        setLenientFallback(false);
+    }
+
+    public static void pinToPrimary() {
+        PINNED_TO_PRIMARY.set(Boolean.TRUE);
+    }
+
+    public static void unpin() {
+        PINNED_TO_PRIMARY.remove();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (TransactionSynchronizationManager.isCurrentTransactionReadOnly() && PINNED_TO_PRIMARY.get() == null) {
+            return replicaSet.selectReplica();
+        }
+        return ReplicaSet.PRIMARY;
+    }
+}
@@ -0,0 +1,192 @@
+package com.example.astonmodule4.routing;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The primary and its read replicas. Replicas are handed out round-robin, skipping those that failed the
+ * last health check or lag behind the primary by more than {@code maxLag}; without a usable replica reads
+ * go to the primary. Owns the pools and closes them on shutdown.
+ */
+@Slf4j
+public class ReplicaSet implements InitializingBean, DisposableBean {
+    public static final String PRIMARY = "primary";
+
+    private static final String PRIMARY_LSN_SQL = "SELECT pg_current_wal_lsn()::text";
+    // Lag of a standby behind the primary's WAL position read just before: 0 once it has replayed up to it (or
+    // when it is not a standby at all), otherwise the time since it last replayed a transaction. Measured
+    // against the primary rather than against what the standby received, so a standby whose WAL receiver
+    // died keeps falling behind instead of looking caught up. A write after the primary sat idle for longer
+    // than the max lag can briefly count as lag until the standby replays it.
+    private static final String LAG_SQL = """
+            SELECT CASE
+                       WHEN NOT pg_is_in_recovery() THEN 0
+                       WHEN pg_last_wal_replay_lsn() >= ?::pg_lsn THEN 0
+                       ELSE EXTRACT(EPOCH FROM now() - COALESCE(pg_last_xact_replay_timestamp(), pg_postmaster_start_time()))
+                   END""";
+    private static final int HEALTH_CHECK_TIMEOUT_SECONDS = 2;
+
+    private final DataSource primary;
+    private final List<Replica> replicas;
+    private final Duration maxLag;
+    private final AtomicInteger next = new AtomicInteger();
+
+    public static final class Replica {
+        private final String name;
+        private final DataSource dataSource;
+        private volatile boolean healthy;
+        private volatile double lagSeconds;
+
+        private Replica(String name, DataSource dataSource) {
+            this.name = name;
+            this.dataSource = dataSource;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public boolean isHealthy() {
+            return healthy;
+        }
+
+        public double getLagSeconds() {
+            return lagSeconds;
+        }
+    }
+
+    /**
+     * @param replicas replica data sources by lookup key; none of them may be named {@link #PRIMARY}
+     */
+    public ReplicaSet(DataSource primary, Map<String, DataSource> replicas, Duration maxLag) {
+        if (replicas.containsKey(PRIMARY)) {
+            throw new IllegalArgumentException("Replica name " + PRIMARY + " is reserved");
+        }
+        this.primary = primary;
+        List<Replica> replicaList = new ArrayList<>(replicas.size());
+        replicas.forEach((name, dataSource) -> replicaList.add(new Replica(name, dataSource)));
+        this.replicas = Collections.unmodifiableList(replicaList);
+        this.maxLag = maxLag;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        checkReplicas();
+    }
+
+    /**
+     * @return the lookup key of the next usable replica, or {@link #PRIMARY}
+     */
+    public String selectReplica() {
+        int size = replicas.size();
+        if (size == 0) {
+            return PRIMARY;
+        }
+        int start = Math.floorMod(next.getAndIncrement(), size);
+        for (int i = 0; i < size; i++) {
+            Replica replica = replicas.get((start + i) % size);
+            if (replica.healthy) {
+                return replica.name;
+            }
+        }
+        return PRIMARY;
+    }
+
+    @Scheduled(fixedDelayString = "${app.datasource.routing.health-check-interval-ms:5000}")
+    public void checkReplicas() {
+        if (replicas.isEmpty()) {
+            return;
+        }
+        String primaryLsn;
+        try {
+            primaryLsn = primaryLsn();
+        } catch (SQLException e) {
+            // Without the primary's position there is nothing to measure lag against; keep the last verdict
+            log.warn("Could not read the primary's WAL position, replica health unchanged: {}", e.getMessage());
+            return;
+        }
+        for (Replica replica : replicas) {
+            boolean wasHealthy = replica.healthy;
+            try (Connection connection = replica.dataSource.getConnection();
+                 PreparedStatement statement = connection.prepareStatement(LAG_SQL)) {
+                statement.setQueryTimeout(HEALTH_CHECK_TIMEOUT_SECONDS);
+                statement.setString(1, primaryLsn);
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    resultSet.next();
+                    replica.lagSeconds = resultSet.getDouble(1);
+                }
+                replica.healthy = replica.lagSeconds * 1000 <= maxLag.toMillis();
+                if (wasHealthy && !replica.healthy) {
+                    log.warn("Replica {} lags {} s behind the primary, reads go elsewhere", replica.name, replica.lagSeconds);
+                }
+            } catch (SQLException e) {
+                replica.healthy = false;
+                if (wasHealthy) {
+                    log.warn("Replica {} failed its health check, reads go elsewhere: {}", replica.name, e.getMessage());
+                }
+            }
+            if (!wasHealthy && replica.healthy) {
+                log.info("Replica {} is serving reads, lag {} s", replica.name, replica.lagSeconds);
+            }
+        }
+    }
+
+    private String primaryLsn() throws SQLException {
+        try (Connection connection = primary.getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.setQueryTimeout(HEALTH_CHECK_TIMEOUT_SECONDS);
+            try (ResultSet resultSet = statement.executeQuery(PRIMARY_LSN_SQL)) {
+                resultSet.next();
+                return resultSet.getString(1);
+            }
+        }
+    }
+
+    public DataSource getPrimary() {
+        return primary;
+    }
+
+    public List<Replica> getReplicas() {
+        return replicas;
+    }
+
+    /**
+     * @return every data source by lookup key, the primary included
+     */
+    public Map<Object, Object> getTargets() {
+        Map<Object, Object> targets = new LinkedHashMap<>();
+        targets.put(PRIMARY, primary);
+        for (Replica replica : replicas) {
+            targets.put(replica.name, replica.dataSource);
+        }
+        return targets;
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        for (Replica replica : replicas) {
+            if (replica.dataSource instanceof AutoCloseable closeable) {
+                closeable.close();
+            }
+        }
+        if (primary instanceof AutoCloseable closeable) {
+            closeable.close();
+        }
+    }
+}
@@ -0,0 +1,262 @@
+package com.example.astonmodule4.service;
+
+import com.example.astonmodule4.mapper.UserMapper;
+import com.example.astonmodule4.model.UserChange;
+import com.example.astonmodule4.model.UserChangePosition;
+import com.example.astonmodule4.model.dto.response.UserChangeResponse;
+import com.example.astonmodule4.repository.UserChangeRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Pushes committed user changes to Server-Sent Events subscribers. A single poller per node follows the
+ * {@code user_changes} log, woken up right after local commits and on a fixed delay for changes made by other
+ * nodes, and fans every change out to bounded per-subscriber queues. Each subscriber's queue is written to its
+ * connection, and its missed changes are read from the log, by a virtual thread of its own that exists only
+ * while there is something to send: an idle subscriber holds no thread, and a client that reads slowly blocks
+ * nobody but itself until its queue overflows. Such a subscriber is disconnected; it reconnects with its
+ * Last-Event-ID and the missed changes are replayed from the log.
+ */
+@Component
+@Slf4j
+public class UserChangeBroadcaster implements DisposableBean {
+    private static final int POLL_BATCH_SIZE = 500;
+    private static final long RECONNECT_DELAY_MILLIS = 3000;
+
+    private final UserChangeRepository changeRepository;
+    private final UserMapper userMapper;
+    private final int bufferSize;
+    private final Duration timeout;
+    private final ExecutorService dispatcher;
+
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final ReentrantLock pollLock = new ReentrantLock();
+    private final AtomicBoolean wakeUpPending = new AtomicBoolean();
+    // Guarded by pollLock; null while nobody is subscribed, so an idle node does not poll at all
+    private UserChangePosition cursor;
+
+    public UserChangeBroadcaster(UserChangeRepository changeRepository,
+                                 UserMapper userMapper,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${app.users.stream.buffer-size:1000}") int bufferSize,
+                                 @Value("${app.users.stream.timeout:30m}") Duration timeout) {
+        this.changeRepository = changeRepository;
+        this.userMapper = userMapper;
+        this.bufferSize = bufferSize;
+        this.timeout = timeout;
+        this.dispatcher = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("user-stream-", 1).factory());
+        meterRegistry.gaugeCollectionSize("users.stream.subscribers", List.of(), subscribers);
+    }
+
+    /**
+     * @param lastEventPosition position of the last change the client has seen, or {@code null} to receive
+     *                          only changes from now on
+     */
+    public SseEmitter subscribe(UserChangePosition lastEventPosition) {
+        SseEmitter emitter = new SseEmitter(timeout.toMillis());
+        Subscriber subscriber;
+        pollLock.lock();
+        try {
+            if (cursor == null) {
+                cursor = changeRepository.findLastPosition();
+            }
+            // Everything after the cursor reaches the queue; what lies between the client and the cursor is read
+            // from the log by the subscriber itself
+            boolean behind = lastEventPosition != null && lastEventPosition.compareTo(cursor) < 0;
+            subscriber = new Subscriber(emitter, lastEventPosition != null ? lastEventPosition : cursor, behind);
+            subscribers.add(subscriber);
+        } finally {
+            pollLock.unlock();
+        }
+
+        emitter.onCompletion(() -> remove(subscriber));
+        emitter.onTimeout(emitter::complete);
+        emitter.onError(e -> remove(subscriber));
+        log.debug("User stream subscribed from {}, subscribers: {}", subscriber.position, subscribers.size());
+
+        subscriber.schedule();
+        return emitter;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserChanged(UserChangedEvent event) {
+        if (subscribers.isEmpty() || !wakeUpPending.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            dispatcher.execute(() -> {
+                wakeUpPending.set(false);
+                poll();
+            });
+        } catch (RejectedExecutionException e) {
+            wakeUpPending.set(false);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.users.stream.poll-interval-ms:1000}")
+    public void poll() {
+        if (subscribers.isEmpty()) {
+            return;
+        }
+        pollLock.lock();
+        try {
+            if (cursor == null) {
+                return;
+            }
+            List<UserChange> changes;
+            do {
+                changes = changeRepository.findAfter(cursor, POLL_BATCH_SIZE);
+                for (UserChange change : changes) {
+                    StreamEvent event = new StreamEvent(change.position(), userMapper.toChangeResponse(change));
+                    subscribers.forEach(subscriber -> subscriber.offer(event));
+                    cursor = change.position();
+                }
+            } while (changes.size() == POLL_BATCH_SIZE);
+        } catch (RuntimeException e) {
+            log.warn("Failed to poll user changes, will retry: {}", e.getMessage());
+        } finally {
+            pollLock.unlock();
+        }
+        subscribers.forEach(Subscriber::schedule);
+    }
+
+    // Keeps idle connections from being closed by proxies and detects clients that went away
+    @Scheduled(fixedDelayString = "${app.users.stream.heartbeat-interval-ms:15000}")
+    public void heartbeat() {
+        subscribers.forEach(Subscriber::requestHeartbeat);
+    }
+
+    @Override
+    public void destroy() {
+        dispatcher.shutdownNow();
+        subscribers.forEach(subscriber -> subscriber.emitter.complete());
+    }
+
+    private void remove(Subscriber subscriber) {
+        subscriber.closed = true;
+        pollLock.lock();
+        try {
+            if (subscribers.remove(subscriber) && subscribers.isEmpty()) {
+                cursor = null;
+            }
+        } finally {
+            pollLock.unlock();
+        }
+        log.debug("User stream unsubscribed, subscribers: {}", subscribers.size());
+    }
+
+    private record StreamEvent(UserChangePosition position, UserChangeResponse change) {
+    }
+
+    private final class Subscriber implements Runnable {
+        private final SseEmitter emitter;
+        private final BlockingQueue<StreamEvent> queue = new ArrayBlockingQueue<>(bufferSize);
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private volatile boolean heartbeatDue;
+        private volatile boolean closed;
+
+        // Only touched by the drain task, which never runs concurrently with itself and is the only one to
+        // block on this subscriber's connection
+        private UserChangePosition position;
+        private boolean catchingUp;
+        private boolean greeted;
+
+        private Subscriber(SseEmitter emitter, UserChangePosition position, boolean catchingUp) {
+            this.emitter = emitter;
+            this.position = position;
+            this.catchingUp = catchingUp;
+        }
+
+        void offer(StreamEvent event) {
+            if (!closed && !queue.offer(event)) {
+                log.warn("User stream subscriber is too slow, {} events buffered, disconnecting", bufferSize);
+                remove(this);
+                emitter.complete();
+            }
+        }
+
+        void requestHeartbeat() {
+            heartbeatDue = true;
+            schedule();
+        }
+
+        void schedule() {
+            if (closed || !scheduled.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                dispatcher.execute(this);
+            } catch (RejectedExecutionException e) {
+                scheduled.set(false);
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                if (!greeted) {
+                    emitter.send(SseEmitter.event().reconnectTime(RECONNECT_DELAY_MILLIS).comment("connected"));
+                    greeted = true;
+                }
+                while (catchingUp && !closed) {
+                    List<UserChange> changes = changeRepository.findAfter(position, POLL_BATCH_SIZE);
+                    for (UserChange change : changes) {
+                        send(new StreamEvent(change.position(), userMapper.toChangeResponse(change)));
+                    }
+                    catchingUp = changes.size() == POLL_BATCH_SIZE;
+                }
+                StreamEvent event;
+                while (!closed && (event = queue.poll()) != null) {
+                    // Changes already replayed from the log while catching up are skipped
+                    if (event.position().compareTo(position) > 0) {
+                        send(event);
+                    }
+                }
+                if (heartbeatDue && !closed) {
+                    heartbeatDue = false;
+                    emitter.send(SseEmitter.event().comment("heartbeat"));
+                }
+            } catch (IOException | IllegalStateException e) {
+                log.debug("User stream subscriber went away: {}", e.getMessage());
+                remove(this);
+            } catch (RuntimeException e) {
+                log.warn("Failed to send user changes to subscriber: {}", e.getMessage());
+                remove(this);
+                emitter.completeWithError(e);
+            } finally {
+                scheduled.set(false);
+                if (!closed && (!queue.isEmpty() || heartbeatDue)) {
+                    schedule();
+                }
+            }
+        }
+
+        private void send(StreamEvent event) throws IOException {
+            emitter.send(SseEmitter.event()
+                    .id(event.position().token())
+                    .name(event.change().getType().name())
+                    .data(event.change(), MediaType.APPLICATION_JSON));
+            position = event.position();
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package com.example.astonmodule4.service;
+
+/**
+ * Published by writers after users were created, updated or deleted. Carries nothing: listeners read the
+ * change itself from the {@code user_changes} log once the transaction is committed.
+ */
+public record UserChangedEvent() {
+}
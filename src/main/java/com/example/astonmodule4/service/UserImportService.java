@@ -0,0 +1,277 @@
+package com.example.astonmodule4.service;
+
+import com.example.astonmodule4.cache.EmailBloomFilter;
+import com.example.astonmodule4.exception.ValidationException;
+import com.example.astonmodule4.model.dto.request.CreateUserRequest;
+import com.example.astonmodule4.model.dto.response.UserImportResponse;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import io.micrometer.core.annotation.Timed;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+@Timed(value = "users.service", histogram = true)
+public class UserImportService {
+    private static final int PROGRESS_EVERY_ROWS = 100_000;
+    private static final int MAX_REPORTED_ERRORS = 100;
+    private static final int COPY_CHUNK_CHARS = 64 * 1024;
+
+    private static final String CREATE_STAGING_SQL = """
+            CREATE TEMP TABLE user_import_staging
+            (
+                line_no BIGINT       NOT NULL,
+                name    VARCHAR(50)  NOT NULL,
+                email   VARCHAR(255) NOT NULL
+            ) ON COMMIT DROP""";
+
+    private static final String COPY_SQL =
+            "COPY user_import_staging (line_no, name, email) FROM STDIN WITH (FORMAT csv)";
+
+    // Ids are taken from user_table_seq one block per 50 rows, the same way Hibernate's pooled optimizer
+    // (allocationSize = 50) uses the sequence, so imported rows never collide with ids handed out by the application.
+    // Every inserted user is also logged to user_changes, so the statement's row count is the number of inserted users.
+    private static final String MERGE_SQL = """
+            WITH candidates AS (
+                SELECT DISTINCT ON (s.email) s.name, s.email
+                FROM user_import_staging s
+                WHERE NOT EXISTS (SELECT 1 FROM user_table u WHERE u.email = s.email)
+                ORDER BY s.email, s.line_no
+            ), numbered AS (
+                SELECT name, email, row_number() OVER () - 1 AS rn
+                FROM candidates
+            ), blocks AS (
+                SELECT g, nextval('user_table_seq') AS hi
+                FROM generate_series(0, (SELECT max(rn) FROM numbered) / 50) AS g
+            ), inserted AS (
+                INSERT INTO user_table (id, name, email, created_at, updated_at)
+                SELECT b.hi - n.rn % 50, n.name, n.email, LOCALTIMESTAMP, LOCALTIMESTAMP
+                FROM numbered n
+                JOIN blocks b ON b.g = n.rn / 50
+                ON CONFLICT (email) DO NOTHING
+                RETURNING id, name, email, version
+            )
+            INSERT INTO user_changes (user_id, operation, name, email, version)
+            SELECT id, 'CREATED', name, email, version
+            FROM inserted""";
+
+    private static final String STAGED_EMAILS_SQL = "SELECT email FROM user_import_staging";
+    private static final int STAGED_EMAILS_FETCH_SIZE = 10_000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Validator validator;
+    private final EmailBloomFilter emailFilter;
+    private final ApplicationEventPublisher eventPublisher;
+
+    /**
+     * Runs as a single transaction, so a failed import leaves nothing behind. The change feed and the SSE stream
+     * are held back until it ends, see {@link com.example.astonmodule4.repository.UserChangeRepository}.
+     */
+    @Transactional
+    public UserImportResponse importCsv(InputStream csv) {
+        log.info("Importing users from CSV");
+        long startedAt = System.nanoTime();
+
+        jdbcTemplate.execute(CREATE_STAGING_SQL);
+        ImportProgress progress = jdbcTemplate.execute(
+                (ConnectionCallback<ImportProgress>) connection -> copyToStaging(connection, csv, startedAt));
+        log.info("CSV staged: {} rows accepted, {} rejected", progress.accepted, progress.rejected);
+
+        jdbcTemplate.execute("ANALYZE user_import_staging");
+        int inserted = jdbcTemplate.update(MERGE_SQL);
+        if (inserted > 0) {
+            eventPublisher.publishEvent(new UserChangedEvent());
+        }
+
+        // Every staged email now exists in user_table; a cursor keeps this pass bounded in memory
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(STAGED_EMAILS_SQL);
+            statement.setFetchSize(STAGED_EMAILS_FETCH_SIZE);
+            return statement;
+        }, (RowCallbackHandler) resultSet -> emailFilter.add(resultSet.getString(1)));
+
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt);
+        log.info("Users imported: {} inserted, {} skipped as existing, {} rejected in {} ms",
+                inserted, progress.accepted - inserted, progress.rejected, elapsedMillis);
+
+        return UserImportResponse.builder()
+                .totalRows(progress.total)
+                .acceptedRows(progress.accepted)
+                .rejectedRows(progress.rejected)
+                .insertedRows(inserted)
+                .skippedRows(progress.accepted - inserted)
+                .elapsedMillis(elapsedMillis)
+                .rowsPerSecond(rowsPerSecond(progress.total, elapsedMillis))
+                .errors(progress.errors)
+                .build();
+    }
+
+    private ImportProgress copyToStaging(Connection connection, InputStream csv, long startedAt) throws SQLException {
+        CopyIn copyIn = connection.unwrap(PGConnection.class).getCopyAPI().copyIn(COPY_SQL);
+        ImportProgress progress = new ImportProgress();
+        StringBuilder chunk = new StringBuilder(COPY_CHUNK_CHARS + 1024);
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(csv, StandardCharsets.UTF_8))) {
+            String line;
+            long lineNo = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNo++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                List<String> fields = parseCsvLine(line);
+                if (lineNo == 1 && isHeader(fields)) {
+                    continue;
+                }
+
+                progress.total++;
+                String error = validate(fields);
+                if (error != null) {
+                    progress.reject(lineNo, error);
+                } else {
+                    appendCopyRow(chunk, lineNo, fields.get(0).trim(), fields.get(1).trim());
+                    progress.accepted++;
+                    if (chunk.length() >= COPY_CHUNK_CHARS) {
+                        writeChunk(copyIn, chunk);
+                    }
+                }
+
+                if (progress.total % PROGRESS_EVERY_ROWS == 0) {
+                    long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt);
+                    log.info("Import progress: {} rows read, {} rejected, {} rows/s",
+                            progress.total, progress.rejected, rowsPerSecond(progress.total, elapsedMillis));
+                }
+            }
+            writeChunk(copyIn, chunk);
+            copyIn.endCopy();
+            return progress;
+        } catch (IOException e) {
+            throw new ValidationException("Failed to read CSV: " + e.getMessage());
+        } finally {
+            if (copyIn.isActive()) {
+                copyIn.cancelCopy();
+            }
+        }
+    }
+
+    private String validate(List<String> fields) {
+        if (fields.size() != 2) {
+            return "expected 2 columns (name,email) but got " + fields.size();
+        }
+        CreateUserRequest request = new CreateUserRequest(fields.get(0).trim(), fields.get(1).trim());
+        Set<ConstraintViolation<CreateUserRequest>> violations = validator.validate(request);
+        if (!violations.isEmpty()) {
+            return violations.stream()
+                    .map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+                    .sorted()
+                    .collect(Collectors.joining("; "));
+        }
+        return null;
+    }
+
+    private static boolean isHeader(List<String> fields) {
+        return fields.size() == 2
+                && "name".equalsIgnoreCase(fields.get(0).trim())
+                && "email".equalsIgnoreCase(fields.get(1).trim());
+    }
+
+    // RFC 4180 fields on a single line: separated by commas, optionally quoted, "" inside quotes is a quote
+    static List<String> parseCsvLine(String line) {
+        List<String> fields = new ArrayList<>(2);
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    private static void appendCopyRow(StringBuilder chunk, long lineNo, String name, String email) {
+        chunk.append(lineNo).append(',');
+        appendQuoted(chunk, name);
+        chunk.append(',');
+        appendQuoted(chunk, email);
+        chunk.append('\n');
+    }
+
+    private static void appendQuoted(StringBuilder chunk, String value) {
+        chunk.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                chunk.append('"');
+            }
+            chunk.append(c);
+        }
+        chunk.append('"');
+    }
+
+    private static void writeChunk(CopyIn copyIn, StringBuilder chunk) throws SQLException {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        byte[] bytes = chunk.toString().getBytes(StandardCharsets.UTF_8);
+        copyIn.writeToCopy(bytes, 0, bytes.length);
+        chunk.setLength(0);
+    }
+
+    private static long rowsPerSecond(long rows, long elapsedMillis) {
+        return elapsedMillis > 0 ? rows * 1000 / elapsedMillis : rows;
+    }
+
+    private static class ImportProgress {
+        private long total;
+        private long accepted;
+        private long rejected;
+        private final List<String> errors = new ArrayList<>();
+
+        private void reject(long lineNo, String error) {
+            rejected++;
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                errors.add("line " + lineNo + ": " + error);
+            }
+        }
+    }
+}
@@ -1,47 +1,226 @@
 package com.example.astonmodule4.service;
 
+import com.example.astonmodule4.cache.EmailBloomFilter;
+import com.example.astonmodule4.cache.UserCache;
+import com.example.astonmodule4.cache.UserCacheInvalidationBus;
+import com.example.astonmodule4.concurrency.CacheFirst;
+import com.example.astonmodule4.concurrency.DatabaseAdmissionLimiter;
 import com.example.astonmodule4.exception.UserAlreadyExistsException;
+import com.example.astonmodule4.exception.UserExceptionHandler;
 import com.example.astonmodule4.exception.UserNotFoundException;
+import com.example.astonmodule4.exception.UserVersionConflictException;
+import com.example.astonmodule4.exception.ValidationException;
 import com.example.astonmodule4.mapper.UserMapper;
 import com.example.astonmodule4.model.User;
+import com.example.astonmodule4.model.UserChange;
+import com.example.astonmodule4.model.UserChangePosition;
+import com.example.astonmodule4.model.UserField;
+import com.example.astonmodule4.model.UserSearchMode;
+import com.example.astonmodule4.model.UserVersion;
+import com.example.astonmodule4.model.UserView;
 import com.example.astonmodule4.model.dto.request.CreateUserRequest;
 import com.example.astonmodule4.model.dto.request.UpdateUserRequest;
+import com.example.astonmodule4.model.dto.response.CreateUsersBatchResponse;
+import com.example.astonmodule4.model.dto.response.UserChangesResponse;
+import com.example.astonmodule4.model.dto.response.UserLookup;
+import com.example.astonmodule4.model.dto.response.UserPage;
 import com.example.astonmodule4.model.dto.response.UserResponse;
+import com.example.astonmodule4.repository.PatchedUser;
+import com.example.astonmodule4.repository.UserChangeRepository;
 import com.example.astonmodule4.repository.UserRepository;
+import io.micrometer.core.annotation.Timed;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
-import java.time.LocalDateTime;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
+@Timed(value = "users.service", histogram = true)
 public class UserService {
+    public static final int DEFAULT_PAGE_LIMIT = 20;
+    public static final int MAX_PAGE_LIMIT = 500;
+    public static final int MAX_LOOKUP_IDS = 1000;
+    private static final int LOOKUP_CHUNK_SIZE = 500;
+    public static final int DEFAULT_CHANGES_LIMIT = 100;
+    public static final int MAX_CHANGES_LIMIT = 1000;
+    public static final int MIN_CONTAINS_QUERY_LENGTH = 3;
+    public static final int MAX_SEARCH_QUERY_LENGTH = 255;
 
     private final UserRepository userRepository;
+    private final UserChangeRepository userChangeRepository;
     private final UserMapper userMapper;
+    private final UserCache userCache;
+    private final UserCacheInvalidationBus cacheInvalidationBus;
+    private final EmailBloomFilter emailFilter;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ObjectProvider<DatabaseAdmissionLimiter> admissionLimiter;
 
+    @Transactional
     public UserResponse createUser(CreateUserRequest userRequest) {
         log.info("Creating user with email: {}", userRequest.getEmail());
 
-        if (userRepository.existsByEmail(userRequest.getEmail())) {
+        // Emails the filter has never seen skip the pre-check; the unique index still catches any conflict
+        if (emailFilter.mightContain(userRequest.getEmail()) && userRepository.existsByEmail(userRequest.getEmail())) {
             log.warn("User with email {} already exists", userRequest.getEmail());
             throw new UserAlreadyExistsException(userRequest.getEmail());
         }
 
         User user = userMapper.fromCreateRequest(userRequest);
-        User savedUser = userRepository.save(user);
+        User savedUser;
+        try {
+            // Flushed right away so that a duplicate email surfaces here and not at commit
+            savedUser = userRepository.saveAndFlush(user);
+        } catch (DataIntegrityViolationException e) {
+            if (!UserExceptionHandler.isDuplicateEmail(e)) {
+                throw e;
+            }
+            log.warn("User with email {} already exists", userRequest.getEmail());
+            throw new UserAlreadyExistsException(userRequest.getEmail());
+        }
+        userChangeRepository.recordCreated(List.of(savedUser));
+        eventPublisher.publishEvent(new UserChangedEvent());
+        emailFilter.add(savedUser.getEmail());
+        UserResponse createdUser = userMapper.toResponse(savedUser);
+        userCache.put(createdUser);
 
         log.info("User created successfully with ID: {}", savedUser.getId());
-        return userMapper.toResponse(savedUser);
+        return createdUser;
+    }
+
+    @Transactional
+    public CreateUsersBatchResponse createUsers(List<CreateUserRequest> userRequests) {
+        log.info("Creating batch of {} users", userRequests.size());
+
+        // One set-based lookup instead of an existsByEmail query per user
+        Set<String> takenEmails = new HashSet<>(userRepository.findExistingEmails(
+                userRequests.stream().map(CreateUserRequest::getEmail).collect(Collectors.toSet())));
+
+        User[] newUsers = new User[userRequests.size()];
+        List<User> usersToSave = new ArrayList<>(userRequests.size());
+        for (int i = 0; i < userRequests.size(); i++) {
+            CreateUserRequest userRequest = userRequests.get(i);
+            if (takenEmails.add(userRequest.getEmail())) {
+                newUsers[i] = userMapper.fromCreateRequest(userRequest);
+                usersToSave.add(newUsers[i]);
+            }
+        }
+
+        // Ids come from the pooled sequence on persist; the inserts are flushed in JDBC batches on commit
+        userRepository.saveAll(usersToSave);
+        userChangeRepository.recordCreated(usersToSave);
+        if (!usersToSave.isEmpty()) {
+            eventPublisher.publishEvent(new UserChangedEvent());
+        }
+        usersToSave.forEach(user -> emailFilter.add(user.getEmail()));
+
+        List<CreateUsersBatchResponse.ItemResult> results = new ArrayList<>(userRequests.size());
+        for (int i = 0; i < userRequests.size(); i++) {
+            String email = userRequests.get(i).getEmail();
+            results.add(newUsers[i] != null
+                    ? CreateUsersBatchResponse.ItemResult.created(i, newUsers[i].getId(), email)
+                    : CreateUsersBatchResponse.ItemResult.conflict(i, email));
+        }
+
+        int conflicts = userRequests.size() - usersToSave.size();
+        log.info("Batch processed: {} users created, {} conflicts", usersToSave.size(), conflicts);
+        return CreateUsersBatchResponse.builder()
+                .created(usersToSave.size())
+                .conflicts(conflicts)
+                .results(results)
+                .build();
     }
-    public UserResponse getUserById(Long id) {
+
+    /**
+     * @param fields fields to return, or {@code null} for all of them. The full user is still loaded and
+     *               cached, since a cache hit is cheaper than any narrower query
+     */
+    @CacheFirst
+    public UserResponse getUserById(Long id, Set<UserField> fields) {
         log.debug("Fetching user with ID: {}", id);
+        UserResponse user = userCache.getIfPresent(id);
+        if (user == null) {
+            user = admitted(() -> userCache.get(id, this::loadUser));
+        }
+        return fields != null ? userMapper.select(user, fields) : user;
+    }
+
+    /**
+     * @param fields fields to return, or {@code null} for all of them
+     */
+    @Transactional(readOnly = true)
+    public UserLookup getUsersByIds(List<Long> ids, Set<UserField> fields) {
+        if (ids.isEmpty() || ids.size() > MAX_LOOKUP_IDS) {
+            throw new ValidationException("Number of ids must be between 1 and " + MAX_LOOKUP_IDS);
+        }
+        Set<Long> requestedIds = new LinkedHashSet<>(ids);
+        log.debug("Fetching {} users by IDs", requestedIds.size());
 
-        User user = userRepository.findById(id)
+        // Cached users are served as is, the rest is loaded with one IN query per chunk
+        Map<Long, UserResponse> foundUsers = new HashMap<>();
+        userCache.getAllPresent(requestedIds).forEach((id, user) ->
+                foundUsers.put(id, fields != null ? userMapper.select(user, fields) : user));
+        List<Long> idsToLoad = requestedIds.stream()
+                .filter(id -> !foundUsers.containsKey(id))
+                .collect(Collectors.toList());
+        for (int from = 0; from < idsToLoad.size(); from += LOOKUP_CHUNK_SIZE) {
+            List<Long> chunk = idsToLoad.subList(from, Math.min(from + LOOKUP_CHUNK_SIZE, idsToLoad.size()));
+            List<UserView> loadedUsers = fields != null
+                    ? userRepository.findSparseViewsByIdIn(fields, chunk)
+                    : userRepository.findViewsByIdIn(chunk);
+            loadedUsers.forEach(user -> foundUsers.put(user.id(), userMapper.toResponse(user)));
+        }
+
+        List<UserResponse> users = new ArrayList<>(foundUsers.size());
+        List<Long> missingIds = new ArrayList<>();
+        for (Long id : requestedIds) {
+            UserResponse user = foundUsers.get(id);
+            if (user != null) {
+                users.add(user);
+            } else {
+                missingIds.add(id);
+            }
+        }
+
+        return UserLookup.builder()
+                .users(users)
+                .missingIds(missingIds)
+                .build();
+    }
+
+    // Not transactional on purpose: a cache hit must not borrow a connection, and the projection
+    // query creates no managed entity, so a single auto-commit SELECT is the cheapest load
+    private UserResponse loadUser(Long id) {
+        log.debug("User cache miss, loading user with ID: {}", id);
+
+        UserView user = userRepository.findViewById(id)
                 .orElseThrow(() -> {
                     log.error("User not found with ID: {}", id);
                     return new UserNotFoundException(id);
@@ -50,45 +229,308 @@ public class UserService {
         return userMapper.toResponse(user);
     }
 
-    public UserResponse updateUser(Long id, UpdateUserRequest userRequest) {
-        log.info("Updating user with ID: {}", id);
-
-        User user = userRepository.findById(id)
+    /**
+     * Current version of a user for conditional requests: taken from the cache when the user is there,
+     * otherwise read with a query that selects nothing but the version columns.
+     */
+    @CacheFirst
+    public UserVersion getUserVersion(Long id) {
+        UserResponse cachedUser = userCache.getIfPresent(id);
+        if (cachedUser != null) {
+            return new UserVersion(cachedUser.getId(), cachedUser.getVersion(), cachedUser.getUpdatedAt());
+        }
+        return admitted(() -> userRepository.findVersionById(id))
                 .orElseThrow(() -> {
-                    log.error("User not found for update with ID: {}", id);
+                    log.error("User not found with ID: {}", id);
                     return new UserNotFoundException(id);
                 });
+    }
 
-        if (userRequest.getEmail() != null &&
-                !userRequest.getEmail().equals(user.getEmail()) &&
-                userRepository.existsByEmail(userRequest.getEmail())) {
+    private <T> T admitted(Supplier<T> call) {
+        DatabaseAdmissionLimiter limiter = admissionLimiter.getIfAvailable();
+        return limiter != null ? limiter.admit(call) : call.get();
+    }
+
+    /**
+     * Updates the user only if it still has {@code expectedVersion}; {@code null} updates any version.
+     *
+     * @throws UserVersionConflictException if the user exists but has another version
+     */
+    public UserResponse updateUser(Long id, Long expectedVersion, UpdateUserRequest userRequest) {
+        log.info("Updating user with ID: {}, expected version: {}", id, expectedVersion);
+
+        // One conditional UPDATE ... RETURNING; a taken email is reported by the unique index on user_table.email
+        PatchedUser patchedUser;
+        try {
+            patchedUser = userRepository.patchById(id, expectedVersion, userRequest.getName(), userRequest.getEmail())
+                    .orElseThrow(() -> updateRejected(id, expectedVersion));
+        } catch (DuplicateKeyException e) {
             log.warn("Email {} already exists", userRequest.getEmail());
             throw new UserAlreadyExistsException(userRequest.getEmail());
         }
 
-        userMapper.updateFromRequest(userRequest, user);
-        User updatedUser = userRepository.save(user);
+        User updatedUser = patchedUser.user();
+        if (!updatedUser.getEmail().equals(patchedUser.previousEmail())) {
+            emailFilter.add(updatedUser.getEmail());
+            emailFilter.remove(patchedUser.previousEmail());
+        }
+
+        UserResponse response = userMapper.toResponse(updatedUser);
+        userCache.put(response);
+        cacheInvalidationBus.publish(id);
+        eventPublisher.publishEvent(new UserChangedEvent());
 
         log.info("User with ID: {} updated successfully", id);
-        return userMapper.toResponse(updatedUser);
+        return response;
     }
 
-    public List<UserResponse> getAllUsers() {
-        log.debug("Fetching all users");
-        return userRepository.findAll().stream()
+    // Only runs after the update matched no row, to tell a missing user from a stale version
+    private RuntimeException updateRejected(Long id, Long expectedVersion) {
+        if (expectedVersion != null && userRepository.findVersionById(id).isPresent()) {
+            log.warn("User with ID: {} no longer has version {}", id, expectedVersion);
+            return new UserVersionConflictException(id);
+        }
+        log.error("User not found for update with ID: {}", id);
+        return new UserNotFoundException(id);
+    }
+
+    /**
+     * @param fields fields to return, or {@code null} for all of them
+     */
+    @Transactional(readOnly = true)
+    public UserPage getUsersPage(Long after, Integer limit, Set<UserField> fields) {
+        int pageLimit = resolvePageLimit(limit);
+        long cursor = after != null ? after : 0L;
+        log.debug("Fetching users page after ID: {}, limit: {}, fields: {}", cursor, pageLimit, fields);
+
+        // One extra row tells whether there is a next page without a count query
+        List<UserView> users = fields != null
+                ? userRepository.findSparseViewsAfter(fields, cursor, pageLimit + 1)
+                : userRepository.findViewsAfter(cursor, PageRequest.ofSize(pageLimit + 1));
+        boolean hasNext = users.size() > pageLimit;
+
+        List<UserResponse> content = users.stream()
+                .limit(pageLimit)
                 .map(userMapper::toResponse)
                 .collect(Collectors.toList());
+
+        return UserPage.builder()
+                .users(content)
+                .limit(pageLimit)
+                .nextCursor(hasNext ? content.get(content.size() - 1).getId() : null)
+                .etag(pageTag(cursor, pageLimit, users.stream()
+                        .map(user -> new UserVersion(user.id(), user.version(), user.updatedAt()))
+                        .collect(Collectors.toList())))
+                .build();
+    }
+
+    /**
+     * Users whose name or email matches {@code query}, ordered by ID and paged by the same cursor as
+     * {@link #getUsersPage}. Matching is case-insensitive.
+     */
+    @Transactional(readOnly = true)
+    public UserPage searchUsers(String query, String mode, Long after, Integer limit, Set<UserField> fields) {
+        int pageLimit = resolvePageLimit(limit);
+        UserSearchMode searchMode = resolveSearchMode(mode);
+        String normalizedQuery = query != null ? query.trim().toLowerCase(Locale.ROOT) : "";
+        if (normalizedQuery.isEmpty() || normalizedQuery.length() > MAX_SEARCH_QUERY_LENGTH) {
+            throw new ValidationException("Search query must be between 1 and " + MAX_SEARCH_QUERY_LENGTH + " characters");
+        }
+        // Trigram indexes cannot narrow down shorter substrings, such a search would scan the whole table
+        if (searchMode == UserSearchMode.CONTAINS && normalizedQuery.length() < MIN_CONTAINS_QUERY_LENGTH) {
+            throw new ValidationException("Substring search needs at least " + MIN_CONTAINS_QUERY_LENGTH
+                    + " characters, use PREFIX mode for shorter queries");
+        }
+        long cursor = after != null ? after : 0L;
+        log.debug("Searching users: query={}, mode={}, after ID: {}, limit: {}", normalizedQuery, searchMode, cursor, pageLimit);
+
+        String escapedQuery = escapeLikePattern(normalizedQuery);
+        String pattern = searchMode == UserSearchMode.PREFIX ? escapedQuery + "%" : "%" + escapedQuery + "%";
+        List<UserView> users = fields != null
+                ? userRepository.searchSparseViewsAfter(fields, pattern, cursor, pageLimit + 1)
+                : userRepository.searchViewsAfter(pattern, cursor, PageRequest.ofSize(pageLimit + 1));
+        boolean hasNext = users.size() > pageLimit;
+
+        List<UserResponse> content = users.stream()
+                .limit(pageLimit)
+                .map(userMapper::toResponse)
+                .collect(Collectors.toList());
+
+        return UserPage.builder()
+                .users(content)
+                .limit(pageLimit)
+                .nextCursor(hasNext ? content.get(content.size() - 1).getId() : null)
+                .build();
+    }
+
+    private static UserSearchMode resolveSearchMode(String mode) {
+        if (mode == null || mode.isBlank()) {
+            return UserSearchMode.CONTAINS;
+        }
+        try {
+            return UserSearchMode.valueOf(mode.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new ValidationException("Unknown search mode: " + mode);
+        }
+    }
+
+    private static String escapeLikePattern(String value) {
+        StringBuilder escaped = new StringBuilder(value.length() + 8);
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '%' || c == '_' || c == '\\') {
+                escaped.append('\\');
+            }
+            escaped.append(c);
+        }
+        return escaped.toString();
+    }
+
+    /**
+     * Entity tag of the page {@link #getUsersPage} would return, computed from the version columns only.
+     */
+    @Transactional(readOnly = true)
+    public String getUsersPageTag(Long after, Integer limit) {
+        int pageLimit = resolvePageLimit(limit);
+        long cursor = after != null ? after : 0L;
+        log.debug("Fetching users page tag after ID: {}, limit: {}", cursor, pageLimit);
+
+        return pageTag(cursor, pageLimit, userRepository.findVersionsAfter(cursor, PageRequest.ofSize(pageLimit + 1)));
+    }
+
+    private static int resolvePageLimit(Integer limit) {
+        int pageLimit = limit != null ? limit : DEFAULT_PAGE_LIMIT;
+        if (pageLimit < 1 || pageLimit > MAX_PAGE_LIMIT) {
+            throw new ValidationException("Page limit must be between 1 and " + MAX_PAGE_LIMIT);
+        }
+        return pageLimit;
+    }
+
+    // Covers the extra row as well, since it decides whether the page has a next link
+    private static String pageTag(long cursor, int limit, List<UserVersion> versions) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES * 2);
+        digest.update(buffer.putLong(cursor).putLong(limit).flip());
+        for (UserVersion version : versions) {
+            digest.update(buffer.clear().putLong(version.id()).putLong(version.version()).flip());
+        }
+        return HexFormat.of().formatHex(digest.digest(), 0, 16);
+    }
+
+    /**
+     * Changes logged after {@code since}, oldest first. A {@code null} token starts from the beginning of the log.
+     */
+    @Transactional(readOnly = true)
+    public UserChangesResponse getChanges(String since, Integer limit) {
+        int changesLimit = limit != null ? limit : DEFAULT_CHANGES_LIMIT;
+        if (changesLimit < 1 || changesLimit > MAX_CHANGES_LIMIT) {
+            throw new ValidationException("Changes limit must be between 1 and " + MAX_CHANGES_LIMIT);
+        }
+        UserChangePosition position = parseChangeToken(since);
+        log.debug("Fetching user changes since: {}, limit: {}", since, changesLimit);
+
+        List<UserChange> changes = userChangeRepository.findAfter(position, changesLimit + 1);
+        boolean hasMore = changes.size() > changesLimit;
+        if (hasMore) {
+            changes = changes.subList(0, changesLimit);
+        }
+
+        String nextToken = changes.isEmpty()
+                ? position.token()
+                : changes.get(changes.size() - 1).position().token();
+        return UserChangesResponse.builder()
+                .changes(changes.stream().map(userMapper::toChangeResponse).collect(Collectors.toList()))
+                .nextToken(nextToken)
+                .hasMore(hasMore)
+                .build();
+    }
+
+    /**
+     * @return the position of the token, or {@link UserChangePosition#START} for a missing token
+     * @throws ValidationException if the token is malformed
+     */
+    public static UserChangePosition parseChangeToken(String token) {
+        if (token == null || token.isBlank()) {
+            return UserChangePosition.START;
+        }
+        try {
+            return UserChangePosition.parse(token.trim());
+        } catch (IllegalArgumentException e) {
+            throw new ValidationException(e.getMessage());
+        }
+    }
+
+    /**
+     * @param fields fields to export, or {@code null} for all of them
+     */
+    @Transactional(readOnly = true)
+    public void exportUsers(Consumer<UserResponse> consumer, Set<UserField> fields) {
+        log.debug("Exporting all users, fields: {}", fields);
+
+        // PostgreSQL only honours the fetch size inside a transaction; projections keep the persistence context empty
+        if (fields != null) {
+            userRepository.forEachSparseView(fields, user -> consumer.accept(userMapper.toResponse(user)));
+            return;
+        }
+        try (Stream<UserView> users = userRepository.streamAllViews()) {
+            users.forEach(user -> consumer.accept(userMapper.toResponse(user)));
+        }
+    }
+
+    /**
+     * Parses a {@code fields} parameter such as {@code id,email}; the id is always included.
+     *
+     * @return the selected fields, or {@code null} when the parameter is absent
+     * @throws ValidationException if a field is unknown
+     */
+    public static Set<UserField> parseFields(String fields) {
+        if (fields == null || fields.isBlank()) {
+            return null;
+        }
+        Set<UserField> selected = EnumSet.of(UserField.ID);
+        for (String name : fields.split(",")) {
+            String trimmed = name.trim();
+            UserField field = Stream.of(UserField.values())
+                    .filter(candidate -> candidate.jsonName().equalsIgnoreCase(trimmed))
+                    .findFirst()
+                    .orElseThrow(() -> new ValidationException("Unknown field: " + trimmed));
+            selected.add(field);
+        }
+        return selected;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void warmUpEmailFilter() {
+        log.info("Warming up email filter");
+        long count = 0;
+        try (Stream<String> emails = userRepository.streamAllEmails()) {
+            for (Iterator<String> iterator = emails.iterator(); iterator.hasNext(); count++) {
+                emailFilter.add(iterator.next());
+            }
+        }
+        emailFilter.markReady();
+        log.info("Email filter ready with {} emails", count);
     }
 
     public void deleteUser(Long id) {
         log.info("Deleting user with ID: {}", id);
 
-        if (!userRepository.existsById(id)) {
-            log.error("User not found for deletion with ID: {}", id);
-            throw new UserNotFoundException(id);
-        }
+        String deletedEmail = userRepository.deleteByIdReturningEmail(id)
+                .orElseThrow(() -> {
+                    log.error("User not found for deletion with ID: {}", id);
+                    return new UserNotFoundException(id);
+                });
 
-        userRepository.deleteById(id);
+        emailFilter.remove(deletedEmail);
+        userCache.evict(id);
+        cacheInvalidationBus.publish(id);
+        eventPublisher.publishEvent(new UserChangedEvent());
         log.info("User with ID: {} deleted successfully", id);
     }
 }
@@ -0,0 +1,8 @@
+-- Matches the schema previously generated by hibernate.ddl-auto=update, so existing databases baseline cleanly
+CREATE TABLE IF NOT EXISTS user_table
+(
+    id         BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    name       VARCHAR(255),
+    email      VARCHAR(255),
+    created_at TIMESTAMP(6)
+);
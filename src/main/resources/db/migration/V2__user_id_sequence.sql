@@ -0,0 +1,7 @@
+-- Ids are now allocated by Hibernate from a pooled sequence (allocationSize = 50), which allows JDBC insert batching.
+-- INCREMENT BY must match allocationSize; the start leaves a full block above the current maximum id.
+CREATE SEQUENCE IF NOT EXISTS user_table_seq INCREMENT BY 50;
+
+SELECT setval('user_table_seq', COALESCE(MAX(id), 0) + 50) FROM user_table;
+
+ALTER TABLE user_table ALTER COLUMN id DROP IDENTITY IF EXISTS;
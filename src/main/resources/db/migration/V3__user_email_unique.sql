@@ -0,0 +1,40 @@
+-- Email uniqueness is enforced by the database; single-statement updates rely on it for conflict detection.
+-- Built concurrently so writes to user_table go on during the build. Existing duplicates would make the build
+-- fail with an unhelpful error and leave an invalid index behind, so they are reported first; resolve them
+-- (merge or delete the rows) and rerun the migration.
+DO
+$$
+    DECLARE
+        duplicates TEXT;
+    BEGIN
+        SELECT string_agg(format('%s (%s rows)', email, row_count), ', ')
+        INTO duplicates
+        FROM (SELECT email, count(*) AS row_count
+              FROM user_table
+              WHERE email IS NOT NULL
+              GROUP BY email
+              HAVING count(*) > 1
+              ORDER BY email
+              LIMIT 20) AS duplicate;
+        IF duplicates IS NOT NULL THEN
+            RAISE EXCEPTION 'Cannot create unique index user_table_email_key, duplicate emails in user_table: %', duplicates
+                USING HINT = 'Resolve the duplicates (SELECT email, count(*) FROM user_table GROUP BY email HAVING count(*) > 1) and rerun the migration';
+        END IF;
+    END
+$$;
+
+-- Left behind by an interrupted concurrent build; IF NOT EXISTS would otherwise keep it
+DO
+$$
+    BEGIN
+        IF EXISTS (SELECT 1
+                   FROM pg_index i
+                   JOIN pg_class c ON c.oid = i.indexrelid
+                   WHERE c.relname = 'user_table_email_key'
+                     AND NOT i.indisvalid) THEN
+            DROP INDEX user_table_email_key;
+        END IF;
+    END
+$$;
+
+CREATE UNIQUE INDEX CONCURRENTLY IF NOT EXISTS user_table_email_key ON user_table (email);
@@ -0,0 +1,5 @@
+-- Row version for ETags and optimistic locking, modification time for Last-Modified
+ALTER TABLE user_table ADD COLUMN IF NOT EXISTS version BIGINT NOT NULL DEFAULT 0;
+ALTER TABLE user_table ADD COLUMN IF NOT EXISTS updated_at TIMESTAMP(6);
+
+UPDATE user_table SET updated_at = created_at WHERE updated_at IS NULL;
@@ -0,0 +1,16 @@
+-- Append-only change log of user_table, written in the same transaction as the change itself.
+-- tx_id is the id of the writing transaction (PostgreSQL 13+); readers only return rows of transactions
+-- below the xmin of their snapshot, so a change can never appear behind a token that was already handed out.
+CREATE TABLE IF NOT EXISTS user_changes
+(
+    seq        BIGSERIAL PRIMARY KEY,
+    tx_id      BIGINT       NOT NULL DEFAULT pg_current_xact_id()::text::bigint,
+    user_id    BIGINT       NOT NULL,
+    operation  VARCHAR(16)  NOT NULL,
+    name       VARCHAR(255),
+    email      VARCHAR(255),
+    version    BIGINT,
+    changed_at TIMESTAMP(6) NOT NULL DEFAULT LOCALTIMESTAMP
+);
+
+CREATE INDEX IF NOT EXISTS user_changes_tx_id_seq_idx ON user_changes (tx_id, seq);
@@ -0,0 +1,13 @@
+-- Indexes for GET /api/users/search, built without blocking writes to user_table.
+-- text_pattern_ops serves prefix LIKE under any collation, pg_trgm GIN serves substring LIKE.
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS user_table_name_prefix_idx
+    ON user_table (lower(name) text_pattern_ops);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS user_table_email_prefix_idx
+    ON user_table (lower(email) text_pattern_ops);
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS user_table_name_trgm_idx
+    ON user_table USING gin (lower(name) gin_trgm_ops);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS user_table_email_trgm_idx
+    ON user_table USING gin (lower(email) gin_trgm_ops);
@@ -0,0 +1,63 @@
+package com.example.astonmodule4.cache;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EmailBloomFilterTest {
+
+    @Test
+    void reportsEverythingAsPresentUntilReady() {
+        EmailBloomFilter filter = new EmailBloomFilter(1000, 0.01);
+
+        assertTrue(filter.mightContain("new@example.com"));
+
+        filter.markReady();
+        assertFalse(filter.mightContain("new@example.com"));
+    }
+
+    @Test
+    void neverMissesAddedEmails() {
+        EmailBloomFilter filter = new EmailBloomFilter(10_000, 0.01);
+        filter.markReady();
+
+        for (int i = 0; i < 10_000; i++) {
+            filter.add("user" + i + "@example.com");
+        }
+
+        for (int i = 0; i < 10_000; i++) {
+            assertTrue(filter.mightContain("user" + i + "@example.com"));
+        }
+    }
+
+    @Test
+    void keepsFalsePositiveRateNearConfiguredProbability() {
+        EmailBloomFilter filter = new EmailBloomFilter(10_000, 0.01);
+        filter.markReady();
+        for (int i = 0; i < 10_000; i++) {
+            filter.add("user" + i + "@example.com");
+        }
+
+        int falsePositives = 0;
+        for (int i = 0; i < 10_000; i++) {
+            if (filter.mightContain("other" + i + "@example.com")) {
+                falsePositives++;
+            }
+        }
+
+        assertTrue(falsePositives < 300, "false positives: " + falsePositives);
+    }
+
+    @Test
+    void removedEmailIsNoLongerReported() {
+        EmailBloomFilter filter = new EmailBloomFilter(1000, 0.01);
+        filter.markReady();
+        filter.add("kept@example.com");
+        filter.add("removed@example.com");
+
+        filter.remove("removed@example.com");
+
+        assertTrue(filter.mightContain("kept@example.com"));
+        assertFalse(filter.mightContain("removed@example.com"));
+    }
+}
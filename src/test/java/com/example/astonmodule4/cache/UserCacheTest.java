@@ -0,0 +1,86 @@
+package com.example.astonmodule4.cache;
+
+import com.example.astonmodule4.model.dto.response.UserResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UserCacheTest {
+    private final UserCache cache = new UserCache(100, Duration.ofMinutes(10), new SimpleMeterRegistry());
+
+    @Test
+    void newerVersionReplacesCachedUser() {
+        cache.put(user(1L, "old@example.com"));
+        cache.put(user(2L, "new@example.com"));
+
+        assertEquals("new@example.com", cache.getIfPresent(1L).getEmail());
+    }
+
+    @Test
+    void olderVersionArrivingLateIsIgnored() {
+        cache.put(user(2L, "new@example.com"));
+        cache.put(user(1L, "old@example.com"));
+
+        assertEquals("new@example.com", cache.getIfPresent(1L).getEmail());
+    }
+
+    @Test
+    void userEvictedWhileLoadingIsNotCached() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch evicting = new CountDownLatch(1);
+        CompletableFuture<Void> deletion = CompletableFuture.runAsync(() -> {
+            awaitUninterruptibly(loading);
+            evicting.countDown();
+            cache.evict(1L);
+        });
+
+        UserResponse loaded = cache.get(1L, id -> {
+            loading.countDown();
+            awaitUninterruptibly(evicting);
+            // The row was read before the delete committed; give the eviction time to be recorded
+            sleepUninterruptibly(100);
+            return user(1L, "deleted@example.com");
+        });
+        deletion.get(5, TimeUnit.SECONDS);
+
+        assertEquals("deleted@example.com", loaded.getEmail());
+        assertNull(cache.getIfPresent(1L));
+    }
+
+    @Test
+    void userLoadedAfterEvictionIsCached() {
+        cache.evict(1L);
+
+        cache.get(1L, id -> user(1L, "new@example.com"));
+
+        assertEquals("new@example.com", cache.getIfPresent(1L).getEmail());
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void sleepUninterruptibly(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static UserResponse user(Long version, String email) {
+        return UserResponse.builder().id(1L).name("Test User").email(email).version(version).build();
+    }
+}
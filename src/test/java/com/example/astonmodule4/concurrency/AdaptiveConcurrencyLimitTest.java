@@ -0,0 +1,83 @@
+package com.example.astonmodule4.concurrency;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdaptiveConcurrencyLimitTest {
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long SLOW = TimeUnit.SECONDS.toNanos(1);
+
+    private final AdaptiveConcurrencyLimit limit =
+            new AdaptiveConcurrencyLimit(4, 2, 8, TimeUnit.MILLISECONDS.toNanos(250), 0.5);
+
+    @Test
+    void rejectsRequestsBeyondTheLimit() {
+        for (int i = 0; i < 4; i++) {
+            assertTrue(limit.tryAcquire());
+        }
+
+        assertFalse(limit.tryAcquire());
+        assertEquals(4, limit.getInFlight());
+    }
+
+    @Test
+    void backsOffOnSlowResponsesDownToMinimum() {
+        limit.tryAcquire();
+        limit.release(SLOW, false);
+        assertEquals(2, limit.getLimit());
+
+        for (int i = 0; i < 4; i++) {
+            limit.tryAcquire();
+            limit.release(SLOW, false);
+        }
+        assertEquals(2, limit.getLimit());
+    }
+
+    @Test
+    void backsOffOncePerWindow() {
+        AdaptiveConcurrencyLimit wide = new AdaptiveConcurrencyLimit(64, 1, 64, TimeUnit.MILLISECONDS.toNanos(250), 0.5);
+        for (int i = 0; i < 64; i++) {
+            wide.tryAcquire();
+        }
+        // Slow responses to the same congestion back off once
+        for (int i = 0; i < 32; i++) {
+            wide.release(SLOW, false);
+        }
+        assertEquals(32, wide.getLimit());
+
+        // Once as many requests as the new limit have completed, the next slow one backs off again
+        wide.release(SLOW, false);
+        assertEquals(16, wide.getLimit());
+    }
+
+    @Test
+    void backsOffOnDroppedRequests() {
+        limit.tryAcquire();
+        limit.release(FAST, true);
+
+        assertEquals(2, limit.getLimit());
+    }
+
+    @Test
+    void growsOnlyWhileTheLimitIsUsed() {
+        limit.tryAcquire();
+        limit.release(FAST, false);
+        assertEquals(4, limit.getLimit());
+
+        for (int round = 0; round < 20; round++) {
+            for (int i = 0; i < limit.getLimit(); i++) {
+                limit.tryAcquire();
+            }
+            int admitted = limit.getInFlight();
+            for (int i = 0; i < admitted; i++) {
+                limit.release(FAST, false);
+            }
+        }
+
+        assertEquals(8, limit.getLimit());
+        assertEquals(0, limit.getInFlight());
+    }
+}
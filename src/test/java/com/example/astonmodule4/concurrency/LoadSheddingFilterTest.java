@@ -0,0 +1,78 @@
+package com.example.astonmodule4.concurrency;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LoadSheddingFilterTest {
+    private final LoadSheddingFilter filter = new LoadSheddingFilter(
+            new ClientRateLimiter(0.01, 1, 1000), null, "X-API-Key", Set.of("known"),
+            Set.of("10.0.0.9"), new ObjectMapper(), new SimpleMeterRegistry());
+
+    @Test
+    void unknownApiKeysShareTheAddressBucket() throws Exception {
+        assertEquals(200, perform("10.0.0.1", "made-up-1"));
+
+        assertEquals(429, perform("10.0.0.1", "made-up-2"));
+        assertEquals(429, perform("10.0.0.1", null));
+    }
+
+    @Test
+    void knownApiKeyHasItsOwnBucket() throws Exception {
+        assertEquals(200, perform("10.0.0.1", null));
+
+        assertEquals(200, perform("10.0.0.1", "known"));
+        assertEquals(429, perform("10.0.0.2", "known"));
+    }
+
+    @Test
+    void clientsBehindTrustedProxyHaveSeparateBuckets() throws Exception {
+        assertEquals(200, performForwarded("10.0.0.9", "203.0.113.1"));
+        assertEquals(200, performForwarded("10.0.0.9", "203.0.113.2"));
+
+        assertEquals(429, performForwarded("10.0.0.9", "203.0.113.1"));
+    }
+
+    @Test
+    void forwardedForIsIgnoredFromUntrustedAddress() throws Exception {
+        assertEquals(200, performForwarded("10.0.0.1", "203.0.113.1"));
+
+        assertEquals(429, performForwarded("10.0.0.1", "203.0.113.2"));
+    }
+
+    @Test
+    void forgedForwardedForEntriesAreSkipped() throws Exception {
+        assertEquals(200, performForwarded("10.0.0.9", "198.51.100.1, 203.0.113.1"));
+
+        assertEquals(429, performForwarded("10.0.0.9", "198.51.100.2, 203.0.113.1"));
+    }
+
+    private int perform(String remoteAddress, String apiKey) throws Exception {
+        return perform(remoteAddress, apiKey, null);
+    }
+
+    private int performForwarded(String remoteAddress, String forwardedFor) throws Exception {
+        return perform(remoteAddress, null, forwardedFor);
+    }
+
+    private int perform(String remoteAddress, String apiKey, String forwardedFor) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/users");
+        request.setRemoteAddr(remoteAddress);
+        if (apiKey != null) {
+            request.addHeader("X-API-Key", apiKey);
+        }
+        if (forwardedFor != null) {
+            request.addHeader("X-Forwarded-For", forwardedFor);
+        }
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain());
+        return response.getStatus();
+    }
+}
@@ -1,35 +1,68 @@
 package com.example.astonmodule4.controller;
 
+import com.example.astonmodule4.exception.DatabaseBusyException;
 import com.example.astonmodule4.exception.UserAlreadyExistsException;
 import com.example.astonmodule4.exception.UserNotFoundException;
+import com.example.astonmodule4.exception.UserVersionConflictException;
+import com.example.astonmodule4.exception.ValidationException;
+import com.example.astonmodule4.model.UserChangePosition;
+import com.example.astonmodule4.model.UserChangeType;
+import com.example.astonmodule4.model.UserField;
+import com.example.astonmodule4.model.UserVersion;
 import com.example.astonmodule4.model.dto.request.CreateUserRequest;
+import com.example.astonmodule4.model.dto.request.CreateUsersBatchRequest;
 import com.example.astonmodule4.model.dto.request.UpdateUserRequest;
+import com.example.astonmodule4.model.dto.response.CreateUsersBatchResponse;
+import com.example.astonmodule4.model.dto.response.UserChangeResponse;
+import com.example.astonmodule4.model.dto.response.UserChangesResponse;
+import com.example.astonmodule4.model.dto.response.UserImportResponse;
+import com.example.astonmodule4.model.dto.response.UserLookup;
+import com.example.astonmodule4.model.dto.response.UserPage;
 import com.example.astonmodule4.model.dto.response.UserResponse;
+import com.example.astonmodule4.service.UserChangeBroadcaster;
+import com.example.astonmodule4.service.UserImportService;
 import com.example.astonmodule4.service.UserService;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
 import org.junit.jupiter.api.Test;
+import org.postgresql.util.PSQLException;
+import org.postgresql.util.ServerErrorMessage;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.context.TestConfiguration;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Import;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.hateoas.MediaTypes;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.InputStream;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.function.Consumer;
 
 import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 @WebMvcTest(UserController.class)
-@Import(UserControllerTest.TestConfig.class)
+@Import({UserControllerTest.TestConfig.class, UserLinkFactory.class})
 class UserControllerTest {
 
     @Autowired
@@ -38,6 +71,12 @@ class UserControllerTest {
     @MockBean
     private UserService userService;
 
+    @MockBean
+    private UserImportService userImportService;
+
+    @MockBean
+    private UserChangeBroadcaster userChangeBroadcaster;
+
     @Autowired
     private ObjectMapper objectMapper;
 
@@ -54,11 +93,13 @@ class UserControllerTest {
             .name("Test User")
             .email("test@example.com")
             .createdAt(LocalDateTime.now().toString())
+            .version(3L)
+            .updatedAt(LocalDateTime.now())
             .build();
 
     @Test
     void getAllUsers() throws Exception {
-        when(userService.getAllUsers()).thenReturn(List.of(
+        when(userService.getUsersPage(null, null, null)).thenReturn(new UserPage(List.of(
                 testUser,
                 UserResponse.builder()
                         .id(2L)
@@ -66,19 +107,263 @@ class UserControllerTest {
                         .email("another@example.com")
                         .createdAt(LocalDateTime.now().toString())
                         .build()
-        ));
+        ), 20, null, "page-tag"));
 
         mockMvc.perform(get("/api/users")
                         .accept(MediaTypes.HAL_JSON))
                 .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "W/\"page-tag-all\""))
                 .andExpect(jsonPath("$._embedded.users", hasSize(2)))
                 .andExpect(jsonPath("$._embedded.users[0].id", is(1)))
                 .andExpect(jsonPath("$._embedded.users[0].name", is("Test User")))
                 .andExpect(jsonPath("$._embedded.users[1].id", is(2)))
+                .andExpect(jsonPath("$._embedded.users[0]._links.self.href", endsWith("/api/users/1")))
+                .andExpect(jsonPath("$._embedded.users[0]._links.update.href", endsWith("/api/users/1")))
+                .andExpect(jsonPath("$._embedded.users[0]._links.delete.href", endsWith("/api/users/1")))
                 .andExpect(jsonPath("$._links.self.href", notNullValue()))
+                .andExpect(jsonPath("$._links.next").doesNotExist())
                 .andExpect(jsonPath("$._links.create.href", notNullValue()));
     }
 
+    @Test
+    void getAllUsers_NextPageLink() throws Exception {
+        when(userService.getUsersPage(0L, 1, null)).thenReturn(new UserPage(List.of(testUser), 1, 1L, "page-tag"));
+
+        mockMvc.perform(get("/api/users")
+                        .param("after", "0")
+                        .param("limit", "1")
+                        .accept(MediaTypes.HAL_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$._embedded.users", hasSize(1)))
+                .andExpect(jsonPath("$._links.self.href", containsString("after=0")))
+                .andExpect(jsonPath("$._links.next.href", endsWith("/api/users?after=1&limit=1")));
+    }
+
+    @Test
+    void getAllUsers_SparseFieldsWithoutLinks() throws Exception {
+        UserResponse sparseUser = UserResponse.builder()
+                .id(1L)
+                .email("test@example.com")
+                .build();
+        when(userService.getUsersPage(null, 1, EnumSet.of(UserField.ID, UserField.EMAIL)))
+                .thenReturn(new UserPage(List.of(sparseUser), 1, 1L, "page-tag"));
+
+        mockMvc.perform(get("/api/users")
+                        .param("limit", "1")
+                        .param("fields", "id,email")
+                        .param("links", "false")
+                        .accept(MediaTypes.HAL_JSON))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "W/\"page-tag-id+email-nolinks\""))
+                .andExpect(jsonPath("$._embedded.users[0].id", is(1)))
+                .andExpect(jsonPath("$._embedded.users[0].email", is("test@example.com")))
+                .andExpect(jsonPath("$._embedded.users[0].name").doesNotExist())
+                .andExpect(jsonPath("$._embedded.users[0].createdAt").doesNotExist())
+                .andExpect(jsonPath("$._embedded.users[0]._links").doesNotExist())
+                .andExpect(jsonPath("$._links.self").doesNotExist())
+                .andExpect(jsonPath("$._links.next.href",
+                        endsWith("/api/users?after=1&limit=1&fields=id,email&links=false")));
+    }
+
+    @Test
+    void getAllUsers_UnknownField() throws Exception {
+        mockMvc.perform(get("/api/users")
+                        .param("fields", "id,password")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message", containsString("password")));
+    }
+
+    @Test
+    void getAllUsers_NotModified() throws Exception {
+        when(userService.getUsersPageTag(null, null)).thenReturn("page-tag");
+
+        mockMvc.perform(get("/api/users")
+                        .header(HttpHeaders.IF_NONE_MATCH, "\"page-tag-all\"")
+                        .accept(MediaTypes.HAL_JSON))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+
+        verify(userService, never()).getUsersPage(any(), any(), any());
+    }
+
+    @Test
+    void getAllUsers_OtherProjectionIsModified() throws Exception {
+        when(userService.getUsersPageTag(null, null)).thenReturn("page-tag");
+        when(userService.getUsersPage(null, null, EnumSet.of(UserField.ID, UserField.EMAIL)))
+                .thenReturn(new UserPage(List.of(testUser), 20, null, "page-tag"));
+
+        mockMvc.perform(get("/api/users")
+                        .param("fields", "id,email")
+                        .header(HttpHeaders.IF_NONE_MATCH, "W/\"page-tag-all\"")
+                        .accept(MediaTypes.HAL_JSON))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "W/\"page-tag-id+email\""));
+    }
+
+    @Test
+    void searchUsers() throws Exception {
+        when(userService.searchUsers("test user", "prefix", null, 1, null))
+                .thenReturn(new UserPage(List.of(testUser), 1, 1L, null));
+
+        mockMvc.perform(get("/api/users/search")
+                        .param("q", "test user")
+                        .param("mode", "prefix")
+                        .param("limit", "1")
+                        .accept(MediaTypes.HAL_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$._embedded.users", hasSize(1)))
+                .andExpect(jsonPath("$._embedded.users[0].id", is(1)))
+                .andExpect(jsonPath("$._links.self.href", endsWith("/api/users/search?q=test%20user&mode=prefix&limit=1")))
+                .andExpect(jsonPath("$._links.next.href",
+                        endsWith("/api/users/search?q=test%20user&mode=prefix&after=1&limit=1")));
+    }
+
+    @Test
+    void searchUsers_QueryTooShort() throws Exception {
+        when(userService.searchUsers("ab", null, null, null, null))
+                .thenThrow(new ValidationException("Substring search needs at least 3 characters"));
+
+        mockMvc.perform(get("/api/users/search")
+                        .param("q", "ab")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.code", is("BAD_REQUEST")));
+    }
+
+    @Test
+    void getAllUsers_InvalidLimit() throws Exception {
+        when(userService.getUsersPage(null, 0, null))
+                .thenThrow(new ValidationException("Page limit must be between 1 and 500"));
+
+        mockMvc.perform(get("/api/users")
+                        .param("limit", "0")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.code", is("BAD_REQUEST")));
+    }
+
+    @Test
+    void getChanges() throws Exception {
+        when(userService.getChanges("10.5", 2)).thenReturn(UserChangesResponse.builder()
+                .changes(List.of(
+                        UserChangeResponse.builder()
+                                .type(UserChangeType.UPDATED)
+                                .userId(1L)
+                                .name("Test User")
+                                .email("test@example.com")
+                                .version(4L)
+                                .build(),
+                        UserChangeResponse.builder()
+                                .type(UserChangeType.DELETED)
+                                .userId(2L)
+                                .version(0L)
+                                .build()))
+                .nextToken("11.7")
+                .hasMore(true)
+                .build());
+
+        mockMvc.perform(get("/api/users/changes")
+                        .param("since", "10.5")
+                        .param("limit", "2")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.changes", hasSize(2)))
+                .andExpect(jsonPath("$.changes[0].type", is("UPDATED")))
+                .andExpect(jsonPath("$.changes[1].type", is("DELETED")))
+                .andExpect(jsonPath("$.changes[1].email").doesNotExist())
+                .andExpect(jsonPath("$.nextToken", is("11.7")))
+                .andExpect(jsonPath("$.hasMore", is(true)));
+    }
+
+    @Test
+    void getChanges_InvalidToken() throws Exception {
+        when(userService.getChanges("garbage", null))
+                .thenThrow(new ValidationException("Invalid change token: garbage"));
+
+        mockMvc.perform(get("/api/users/changes")
+                        .param("since", "garbage")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.code", is("BAD_REQUEST")));
+    }
+
+    @Test
+    void streamChanges_ResumesFromLastEventId() throws Exception {
+        when(userChangeBroadcaster.subscribe(new UserChangePosition(10L, 5L))).thenReturn(new SseEmitter());
+
+        mockMvc.perform(get("/api/users/stream")
+                        .header("Last-Event-ID", "10.5")
+                        .accept(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(request().asyncStarted());
+
+        verify(userChangeBroadcaster).subscribe(new UserChangePosition(10L, 5L));
+    }
+
+    @Test
+    void getUsersByIds() throws Exception {
+        UserResponse anotherUser = UserResponse.builder()
+                .id(3L)
+                .name("Another User")
+                .email("another@example.com")
+                .build();
+        when(userService.getUsersByIds(List.of(3L, 2L, 1L), null))
+                .thenReturn(new UserLookup(List.of(anotherUser, testUser), List.of(2L)));
+
+        mockMvc.perform(get("/api/users")
+                        .param("ids", "3,2,1")
+                        .accept(MediaTypes.HAL_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.users", hasSize(2)))
+                .andExpect(jsonPath("$.users[0].id", is(3)))
+                .andExpect(jsonPath("$.users[1].id", is(1)))
+                .andExpect(jsonPath("$.users[0]._links.self.href", notNullValue()))
+                .andExpect(jsonPath("$.missingIds", contains(2)))
+                .andExpect(jsonPath("$._links.self.href", notNullValue()));
+
+        verify(userService, never()).getUsersPage(any(), any(), any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void exportUsers() throws Exception {
+        doAnswer(invocation -> {
+            Consumer<UserResponse> consumer = invocation.getArgument(0);
+            consumer.accept(testUser);
+            consumer.accept(UserResponse.builder().id(2L).name("Another User").email("another@example.com").build());
+            return null;
+        }).when(userService).exportUsers(any(Consumer.class), isNull());
+
+        MvcResult result = mockMvc.perform(get("/api/users/export"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                .andExpect(content().string(startsWith("{\"id\":1,\"name\":\"Test User\",\"email\":\"test@example.com\"")))
+                .andExpect(content().string(containsString("\n{\"id\":2,")))
+                .andExpect(content().string(endsWith("}\n")));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void exportUsers_WithFields() throws Exception {
+        doAnswer(invocation -> {
+            Consumer<UserResponse> consumer = invocation.getArgument(0);
+            consumer.accept(UserResponse.builder().id(1L).email("test@example.com").build());
+            return null;
+        }).when(userService).exportUsers(any(Consumer.class), eq(EnumSet.of(UserField.ID, UserField.EMAIL)));
+
+        MvcResult result = mockMvc.perform(get("/api/users/export").param("fields", "id,email"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().string("{\"id\":1,\"email\":\"test@example.com\"}\n"));
+    }
+
     @Test
     void createUser() throws Exception {
         CreateUserRequest request = new CreateUserRequest("New User", "new@example.com");
@@ -98,21 +383,131 @@ class UserControllerTest {
                 .andExpect(jsonPath("$._links.users.href", notNullValue()));
     }
 
+    @Test
+    void createUsersBatch() throws Exception {
+        CreateUsersBatchRequest request = new CreateUsersBatchRequest(List.of(
+                new CreateUserRequest("New User", "new@example.com"),
+                new CreateUserRequest("Existing User", "existing@example.com")));
+        when(userService.createUsers(anyList())).thenReturn(CreateUsersBatchResponse.builder()
+                .created(1)
+                .conflicts(1)
+                .results(List.of(
+                        CreateUsersBatchResponse.ItemResult.created(0, 10L, "new@example.com"),
+                        CreateUsersBatchResponse.ItemResult.conflict(1, "existing@example.com")))
+                .build());
+
+        mockMvc.perform(post("/api/users/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.created", is(1)))
+                .andExpect(jsonPath("$.conflicts", is(1)))
+                .andExpect(jsonPath("$.results[0].status", is("CREATED")))
+                .andExpect(jsonPath("$.results[0].id", is(10)))
+                .andExpect(jsonPath("$.results[1].status", is("CONFLICT")))
+                .andExpect(jsonPath("$.results[1].email", is("existing@example.com")));
+    }
+
+    @Test
+    void createUsersBatch_InvalidItem() throws Exception {
+        CreateUsersBatchRequest request = new CreateUsersBatchRequest(List.of(
+                new CreateUserRequest("New User", "not-an-email")));
+
+        mockMvc.perform(post("/api/users/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.code", is("VALIDATION_ERROR")));
+
+        verify(userService, never()).createUsers(anyList());
+    }
+
+    @Test
+    void importUsers() throws Exception {
+        MockMultipartFile file = new MockMultipartFile("file", "users.csv", "text/csv",
+                "name,email\nNew User,new@example.com\nX,bad\n".getBytes());
+        when(userImportService.importCsv(any(InputStream.class))).thenReturn(UserImportResponse.builder()
+                .totalRows(2)
+                .acceptedRows(1)
+                .rejectedRows(1)
+                .insertedRows(1)
+                .errors(List.of("line 3: email: Некорректный формат email"))
+                .build());
+
+        mockMvc.perform(multipart("/api/users/import")
+                        .file(file)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.totalRows", is(2)))
+                .andExpect(jsonPath("$.insertedRows", is(1)))
+                .andExpect(jsonPath("$.rejectedRows", is(1)))
+                .andExpect(jsonPath("$.errors", hasSize(1)));
+    }
+
     @Test
     void getUserById() throws Exception {
-        when(userService.getUserById(1L)).thenReturn(testUser);
+        when(userService.getUserById(1L, null)).thenReturn(testUser);
 
         mockMvc.perform(get("/api/users/1")
                         .accept(MediaTypes.HAL_JSON))
                 .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "W/\"3\""))
+                .andExpect(header().exists(HttpHeaders.LAST_MODIFIED))
                 .andExpect(jsonPath("$.id", is(1)))
                 .andExpect(jsonPath("$.name", is("Test User")))
+                .andExpect(jsonPath("$.version").doesNotExist())
                 .andExpect(jsonPath("$._links.self.href", notNullValue()))
                 .andExpect(jsonPath("$._links.update.href", notNullValue()))
                 .andExpect(jsonPath("$._links.delete.href", notNullValue()))
                 .andExpect(jsonPath("$._links.users.href", notNullValue()));
     }
 
+    @Test
+    void getUserById_Cbor() throws Exception {
+        when(userService.getUserById(1L, null)).thenReturn(testUser);
+
+        MvcResult result = mockMvc.perform(get("/api/users/1")
+                        .accept(MediaType.APPLICATION_CBOR))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_CBOR))
+                .andExpect(header().string(HttpHeaders.ETAG, "W/\"3\""))
+                .andReturn();
+
+        JsonNode body = new CBORMapper().readTree(result.getResponse().getContentAsByteArray());
+        assertEquals(1, body.get("id").asInt());
+        assertEquals("Test User", body.get("name").asText());
+        assertTrue(body.at("/_links/self/href").asText().endsWith("/api/users/1"));
+    }
+
+    @Test
+    void getUserById_NotModified() throws Exception {
+        when(userService.getUserVersion(1L)).thenReturn(new UserVersion(1L, 3L, LocalDateTime.now()));
+
+        mockMvc.perform(get("/api/users/1")
+                        .header(HttpHeaders.IF_NONE_MATCH, "\"3\"")
+                        .accept(MediaTypes.HAL_JSON))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, "W/\"3\""))
+                .andExpect(content().string(""));
+
+        verify(userService, never()).getUserById(any(), any());
+    }
+
+    @Test
+    void getUserById_Modified() throws Exception {
+        when(userService.getUserVersion(1L)).thenReturn(new UserVersion(1L, 3L, LocalDateTime.now()));
+        when(userService.getUserById(1L, null)).thenReturn(testUser);
+
+        mockMvc.perform(get("/api/users/1")
+                        .header(HttpHeaders.IF_NONE_MATCH, "\"2\"")
+                        .accept(MediaTypes.HAL_JSON))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "W/\"3\""))
+                .andExpect(jsonPath("$.id", is(1)));
+    }
+
     @Test
     void updateUser() throws Exception {
         UpdateUserRequest request = new UpdateUserRequest("Updated Name", "updated@example.com");
@@ -123,7 +518,7 @@ class UserControllerTest {
                 .createdAt(LocalDateTime.now().toString())
                 .build();
 
-        when(userService.updateUser(eq(1L), any(UpdateUserRequest.class))).thenReturn(updatedUser);
+        when(userService.updateUser(eq(1L), isNull(), any(UpdateUserRequest.class))).thenReturn(updatedUser);
 
         mockMvc.perform(put("/api/users/1")
                         .contentType(MediaType.APPLICATION_JSON)
@@ -137,6 +532,71 @@ class UserControllerTest {
                 .andExpect(jsonPath("$._links.users.href", notNullValue()));
     }
 
+    @Test
+    void updateUser_IfMatch() throws Exception {
+        UpdateUserRequest request = new UpdateUserRequest("Updated Name", null);
+        UserResponse updatedUser = UserResponse.builder()
+                .id(1L)
+                .name("Updated Name")
+                .email("test@example.com")
+                .version(4L)
+                .build();
+
+        when(userService.updateUser(eq(1L), eq(3L), any(UpdateUserRequest.class))).thenReturn(updatedUser);
+
+        mockMvc.perform(put("/api/users/1")
+                        .header(HttpHeaders.IF_MATCH, "\"3\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaTypes.HAL_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "W/\"4\""))
+                .andExpect(jsonPath("$.name", is("Updated Name")));
+    }
+
+    @Test
+    void updateUser_WeakIfMatch() throws Exception {
+        UpdateUserRequest request = new UpdateUserRequest("Updated Name", null);
+        UserResponse updatedUser = UserResponse.builder().id(1L).name("Updated Name").version(4L).build();
+
+        when(userService.updateUser(eq(1L), eq(3L), any(UpdateUserRequest.class))).thenReturn(updatedUser);
+
+        mockMvc.perform(put("/api/users/1")
+                        .header(HttpHeaders.IF_MATCH, "W/\"3\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaTypes.HAL_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "W/\"4\""));
+    }
+
+    @Test
+    void updateUser_VersionConflict() throws Exception {
+        UpdateUserRequest request = new UpdateUserRequest("Updated Name", null);
+
+        when(userService.updateUser(eq(1L), eq(2L), any(UpdateUserRequest.class)))
+                .thenThrow(new UserVersionConflictException(1L));
+
+        mockMvc.perform(put("/api/users/1")
+                        .header(HttpHeaders.IF_MATCH, "\"2\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isPreconditionFailed())
+                .andExpect(jsonPath("$.code", is("PRECONDITION_FAILED")));
+    }
+
+    @Test
+    void getUserById_DatabaseBusy() throws Exception {
+        when(userService.getUserById(1L, null)).thenThrow(new DatabaseBusyException(Duration.ofSeconds(2)));
+
+        mockMvc.perform(get("/api/users/1")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string(HttpHeaders.RETRY_AFTER, "1"))
+                .andExpect(jsonPath("$.code", is("SERVICE_UNAVAILABLE")));
+    }
+
     @Test
     void deleteUser() throws Exception {
         doNothing().when(userService).deleteUser(1L);
@@ -147,7 +607,7 @@ class UserControllerTest {
 
     @Test
     void getUserById_UserNotFoundException() throws Exception {
-        when(userService.getUserById(999L))
+        when(userService.getUserById(999L, null))
                 .thenThrow(new UserNotFoundException(999L));
 
         mockMvc.perform(get("/api/users/999")
@@ -161,7 +621,7 @@ class UserControllerTest {
     void updateUser_UserNotFoundException() throws Exception {
         UpdateUserRequest request = new UpdateUserRequest("Updated Name", "updated@example.com");
 
-        when(userService.updateUser(eq(999L), any(UpdateUserRequest.class)))
+        when(userService.updateUser(eq(999L), isNull(), any(UpdateUserRequest.class)))
                 .thenThrow(new UserNotFoundException(999L));
 
         mockMvc.perform(put("/api/users/999")
@@ -199,11 +659,27 @@ class UserControllerTest {
                 .andExpect(jsonPath("$.message", containsString("existing@example.com")));
     }
 
+    @Test
+    void createUser_EmailTooLong() throws Exception {
+        CreateUserRequest request = new CreateUserRequest("Test User", "a".repeat(60) + "@" + "b".repeat(60) + "."
+                + "c".repeat(60) + "." + "d".repeat(61) + ".example.com");
+
+        mockMvc.perform(post("/api/users")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.code", is("VALIDATION_ERROR")))
+                .andExpect(jsonPath("$.details.email", notNullValue()));
+
+        verify(userService, never()).createUser(any(CreateUserRequest.class));
+    }
+
     @Test
     void updateUser_UserAlreadyExistsException() throws Exception {
         UpdateUserRequest request = new UpdateUserRequest("Updated Name", "existing@example.com");
 
-        when(userService.updateUser(eq(1L), any(UpdateUserRequest.class)))
+        when(userService.updateUser(eq(1L), isNull(), any(UpdateUserRequest.class)))
                 .thenThrow(new UserAlreadyExistsException("existing@example.com"));
 
         mockMvc.perform(put("/api/users/1")
@@ -214,9 +690,41 @@ class UserControllerTest {
                 .andExpect(jsonPath("$.code", is("CONFLICT")));
     }
 
+    @Test
+    void updateUser_DuplicateEmailInDatabase() throws Exception {
+        UpdateUserRequest request = new UpdateUserRequest(null, "existing@example.com");
+
+        when(userService.updateUser(eq(1L), isNull(), any(UpdateUserRequest.class)))
+                .thenThrow(integrityViolation("23505", "user_table_email_key",
+                        "Key (email)=(existing@example.com) already exists."));
+
+        mockMvc.perform(put("/api/users/1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.code", is("CONFLICT")))
+                .andExpect(jsonPath("$.message", containsString("existing@example.com")));
+    }
+
+    @Test
+    void updateUser_OtherIntegrityViolation() throws Exception {
+        UpdateUserRequest request = new UpdateUserRequest(null, "long@example.com");
+
+        when(userService.updateUser(eq(1L), isNull(), any(UpdateUserRequest.class)))
+                .thenThrow(integrityViolation("22001", null, null));
+
+        mockMvc.perform(put("/api/users/1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.code", is("BAD_REQUEST")));
+    }
+
     @Test
     void getAllUsers_EmptyList() throws Exception {
-        when(userService.getAllUsers()).thenReturn(List.of());
+        when(userService.getUsersPage(null, null, null)).thenReturn(new UserPage(List.of(), 20, null, "page-tag"));
 
         mockMvc.perform(get("/api/users")
                         .accept(MediaTypes.HAL_JSON))
@@ -225,4 +733,17 @@ class UserControllerTest {
                 .andExpect(jsonPath("$._links.self.href", notNullValue()))
                 .andExpect(jsonPath("$._links.create.href", notNullValue()));
     }
-}
\ No newline at end of file
+
+    // A violation as the PostgreSQL driver reports it: fields of the server's ErrorResponse message
+    private static DataIntegrityViolationException integrityViolation(String sqlState, String constraint, String detail) {
+        StringBuilder fields = new StringBuilder("SERROR\0C").append(sqlState).append("\0Mviolation\0");
+        if (constraint != null) {
+            fields.append('n').append(constraint).append('\0');
+        }
+        if (detail != null) {
+            fields.append('D').append(detail).append('\0');
+        }
+        PSQLException cause = new PSQLException(new ServerErrorMessage(fields.toString()));
+        return new DataIntegrityViolationException("could not execute statement", cause);
+    }
+}
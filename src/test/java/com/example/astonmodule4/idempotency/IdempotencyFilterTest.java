@@ -0,0 +1,50 @@
+package com.example.astonmodule4.idempotency;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IdempotencyFilterTest {
+    private static final int MAX_BODY_SIZE = 16;
+
+    private final IdempotencyStore store = new IdempotencyStore(null, "memory", 1000,
+            Duration.ofHours(1), Duration.ofSeconds(5), Duration.ofMinutes(5));
+    private final IdempotencyFilter filter = new IdempotencyFilter(store, MAX_BODY_SIZE,
+            new ObjectMapper(), new SimpleMeterRegistry());
+
+    @Test
+    void bodyWithinLimitIsPassedOn() throws Exception {
+        MockFilterChain chain = new MockFilterChain();
+
+        MockHttpServletResponse response = perform(new byte[MAX_BODY_SIZE], chain);
+
+        assertEquals(200, response.getStatus());
+        assertEquals(MAX_BODY_SIZE, chain.getRequest().getInputStream().readAllBytes().length);
+    }
+
+    @Test
+    void oversizedBodyIsRefused() throws Exception {
+        MockFilterChain chain = new MockFilterChain();
+
+        MockHttpServletResponse response = perform(new byte[MAX_BODY_SIZE + 1], chain);
+
+        assertEquals(413, response.getStatus());
+        assertNull(chain.getRequest());
+    }
+
+    private MockHttpServletResponse perform(byte[] body, MockFilterChain chain) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/users");
+        request.addHeader(IdempotencyFilter.IDEMPOTENCY_KEY_HEADER, "key-1");
+        request.setContent(body);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, chain);
+        return response;
+    }
+}
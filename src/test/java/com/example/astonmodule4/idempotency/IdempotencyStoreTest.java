@@ -0,0 +1,123 @@
+package com.example.astonmodule4.idempotency;
+
+import com.example.astonmodule4.exception.IdempotencyKeyInProgressException;
+import com.example.astonmodule4.exception.IdempotencyKeyReuseException;
+import com.example.astonmodule4.model.IdempotentResponse;
+import com.example.astonmodule4.repository.IdempotencyKeyRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IdempotencyStoreTest {
+    private final IdempotencyStore store = new IdempotencyStore(null, "memory", 1000, Duration.ofHours(1), Duration.ofSeconds(5), Duration.ofMinutes(5));
+
+    @Test
+    void replaysCompletedResponse() {
+        assertNull(store.claim("key-1", "fp"));
+        IdempotentResponse response = response("fp", 200);
+        store.complete("key-1", response);
+
+        assertSame(response, store.claim("key-1", "fp"));
+    }
+
+    @Test
+    void rejectsKeyReuseForDifferentRequest() {
+        assertNull(store.claim("key-1", "fp"));
+        store.complete("key-1", response("fp", 200));
+
+        assertThrows(IdempotencyKeyReuseException.class, () -> store.claim("key-1", "other"));
+    }
+
+    @Test
+    void concurrentRequestWaitsForTheFirstOne() throws Exception {
+        assertNull(store.claim("key-1", "fp"));
+
+        CompletableFuture<IdempotentResponse> retry = CompletableFuture.supplyAsync(() -> store.claim("key-1", "fp"));
+        IdempotentResponse response = response("fp", 200);
+        Thread.sleep(100);
+        assertFalse(retry.isDone());
+        store.complete("key-1", response);
+
+        assertSame(response, retry.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void givesUpWaitingAfterTimeout() {
+        IdempotencyStore impatient = new IdempotencyStore(null, "memory", 1000, Duration.ofHours(1), Duration.ofMillis(50), Duration.ofMinutes(5));
+        assertNull(impatient.claim("key-1", "fp"));
+
+        assertThrows(IdempotencyKeyInProgressException.class, () -> impatient.claim("key-1", "fp"));
+    }
+
+    @Test
+    void serverErrorsAreNotKept() {
+        assertNull(store.claim("key-1", "fp"));
+        store.complete("key-1", response("fp", 503));
+
+        assertNull(store.claim("key-1", "fp"));
+    }
+
+    @Test
+    void abandonedKeyCanBeClaimedAgain() {
+        assertNull(store.claim("key-1", "fp"));
+        store.abandon("key-1", new IllegalStateException("handler failed"));
+
+        assertNull(store.claim("key-1", "fp"));
+    }
+
+    @Test
+    void sharedStoreFailureStillCompletesTheKey() {
+        IdempotencyStore failing = new IdempotencyStore(new UnavailableRepository(), "postgres", 1000,
+                Duration.ofHours(1), Duration.ofSeconds(5), Duration.ofMinutes(5));
+        assertNull(failing.claim("key-1", "fp"));
+        IdempotentResponse response = response("fp", 200);
+
+        assertDoesNotThrow(() -> failing.complete("key-1", response));
+        assertSame(response, failing.claim("key-1", "fp"));
+    }
+
+    @Test
+    void sharedStoreFailureStillReleasesTheKey() {
+        IdempotencyStore failing = new IdempotencyStore(new UnavailableRepository(), "postgres", 1000,
+                Duration.ofHours(1), Duration.ofSeconds(5), Duration.ofMinutes(5));
+        assertNull(failing.claim("key-1", "fp"));
+
+        assertDoesNotThrow(() -> failing.complete("key-1", response("fp", 503)));
+        assertNull(failing.claim("key-1", "fp"));
+    }
+
+    private static IdempotentResponse response(String fingerprint, int status) {
+        return new IdempotentResponse(fingerprint, status, "application/hal+json",
+                "{\"id\":1}".getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Hands out every claim but cannot record anything afterwards.
+     */
+    private static class UnavailableRepository extends IdempotencyKeyRepository {
+        UnavailableRepository() {
+            super(null);
+        }
+
+        @Override
+        public boolean claim(String key, String fingerprint, Duration staleAfter, Duration ttl) {
+            return true;
+        }
+
+        @Override
+        public void complete(String key, IdempotentResponse response) {
+            throw new DataAccessResourceFailureException("Database is down");
+        }
+
+        @Override
+        public void delete(String key) {
+            throw new DataAccessResourceFailureException("Database is down");
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.example.astonmodule4.idempotency;
+
+import com.example.astonmodule4.exception.IdempotencyKeyInProgressException;
+import com.example.astonmodule4.model.IdempotentResponse;
+import com.example.astonmodule4.repository.IdempotencyKeyRepository;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * {@code app.idempotency.store=postgres} against a real PostgreSQL: two stores share one table the way
+ * two nodes would.
+ */
+class SharedIdempotencyStoreTest {
+    private static final Duration TTL = Duration.ofHours(1);
+
+    private static EmbeddedPostgres postgres;
+    private static NamedParameterJdbcTemplate jdbcTemplate;
+
+    private IdempotencyKeyRepository repository;
+
+    @BeforeAll
+    static void startPostgres() throws IOException {
+        postgres = EmbeddedPostgres.builder().start();
+        Flyway.configure()
+                .dataSource(postgres.getPostgresDatabase())
+                .configuration(Map.of("flyway.postgresql.transactional.lock", "false"))
+                .load()
+                .migrate();
+        jdbcTemplate = new NamedParameterJdbcTemplate(postgres.getPostgresDatabase());
+    }
+
+    @AfterAll
+    static void stopPostgres() throws IOException {
+        postgres.close();
+    }
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("DELETE FROM idempotency_keys", Map.of());
+        repository = new IdempotencyKeyRepository(jdbcTemplate);
+    }
+
+    @Test
+    void runningClaimIsNotTakenOverWithinLease() {
+        IdempotencyStore first = store(Duration.ofMillis(200), Duration.ofMinutes(5));
+        IdempotencyStore second = store(Duration.ofMillis(200), Duration.ofMinutes(5));
+        assertNull(first.claim("key-1", "fp"));
+
+        // Well past the wait timeout, the first node is still running the request
+        assertThrows(IdempotencyKeyInProgressException.class, () -> second.claim("key-1", "fp"));
+        assertThrows(IdempotencyKeyInProgressException.class, () -> second.claim("key-1", "fp"));
+    }
+
+    @Test
+    void otherNodeReplaysCompletedResponse() {
+        IdempotencyStore first = store(Duration.ofSeconds(5), Duration.ofMinutes(5));
+        IdempotencyStore second = store(Duration.ofSeconds(5), Duration.ofMinutes(5));
+        assertNull(first.claim("key-1", "fp"));
+        first.complete("key-1", response("fp", 200));
+
+        IdempotentResponse replayed = second.claim("key-1", "fp");
+
+        assertNotNull(replayed);
+        assertEquals(200, replayed.status());
+        assertArrayEquals(response("fp", 200).body(), replayed.body());
+    }
+
+    @Test
+    void claimOfDeadNodeIsTakenOverAfterLease() throws InterruptedException {
+        assertTrue(repository.claim("key-1", "fp", Duration.ofMinutes(5), TTL));
+        Thread.sleep(50);
+
+        assertFalse(repository.claim("key-1", "fp", Duration.ofMinutes(5), TTL));
+        assertTrue(repository.claim("key-1", "fp", Duration.ofMillis(10), TTL));
+    }
+
+    @Test
+    void completedResponseIsNeitherTakenOverNorReplaced() throws InterruptedException {
+        assertTrue(repository.claim("key-1", "fp", Duration.ofMinutes(5), TTL));
+        repository.complete("key-1", response("fp", 200));
+        Thread.sleep(50);
+
+        assertFalse(repository.claim("key-1", "fp", Duration.ofMillis(10), TTL));
+        repository.complete("key-1", response("fp", 409));
+        repository.delete("key-1");
+
+        assertEquals(200, repository.findCompleted("key-1", TTL).orElseThrow().status());
+    }
+
+    @Test
+    void expiredResponseIsClaimedAgain() throws InterruptedException {
+        assertTrue(repository.claim("key-1", "fp", Duration.ofMinutes(5), TTL));
+        repository.complete("key-1", response("fp", 200));
+        Thread.sleep(50);
+
+        assertTrue(repository.findCompleted("key-1", Duration.ofMillis(10)).isEmpty());
+        assertTrue(repository.claim("key-1", "fp", Duration.ofMinutes(5), Duration.ofMillis(10)));
+    }
+
+    private IdempotencyStore store(Duration waitTimeout, Duration lease) {
+        return new IdempotencyStore(repository, "postgres", 1000, TTL, waitTimeout, lease);
+    }
+
+    private static IdempotentResponse response(String fingerprint, int status) {
+        return new IdempotentResponse(fingerprint, status, "application/hal+json",
+                "{\"id\":1}".getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,355 @@
+package com.example.astonmodule4.load;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * End-to-end load test of /api/users over HTTP, against embedded PostgreSQL binaries so it runs without
+ * Docker or network access. Excluded from the default build; run it with
+ * {@code mvn -o -P load-test test}, tuned by system properties:
+ * <ul>
+ *     <li>{@code load.users} - users seeded before the run (10000)</li>
+ *     <li>{@code load.concurrency} - clients, each with one request in flight (32)</li>
+ *     <li>{@code load.warmup}, {@code load.duration} - unmeasured and measured phases (10s, 30s)</li>
+ *     <li>{@code load.mix} - operation weights (get=60,list=20,create=10,update=7,delete=3)</li>
+ *     <li>{@code load.baseline} - baseline to compare against (perf/load/baseline.properties), {@code none}
+ *     to only report</li>
+ *     <li>{@code load.tolerance} - allowed relative regression of p50, p99 and throughput (0.2)</li>
+ * </ul>
+ * The results and the parameters they were measured with are written to target/load/report.properties in
+ * the baseline format; perf/load/record-baseline.sh records a new baseline from such a run. The test fails
+ * when the baseline is missing or was recorded with other parameters, and only reports while the baseline
+ * has no figures yet.
+ */
+@Tag("load")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "debug=false",
+        "spring.jpa.show-sql=false",
+        "logging.level.com.example.astonmodule4=WARN",
+        "logging.level.org.springframework.hateoas=WARN",
+        "logging.level.org.springdoc=WARN",
+        // All clients share one address, the per-client rate limit would throttle the whole run
+        "app.rate-limit.enabled=false",
+        // Measures the server, not the load shedding: with the AIMD limit on, overload shows up as 503s and
+        // caps platform and virtual threads alike
+        "app.concurrency-limit.enabled=false"
+})
+class UserLoadTest {
+    private static final EmbeddedPostgres POSTGRES = startPostgres();
+    private static final Path REPORT = Path.of("target", "load", "report.properties");
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+    private final ConcurrentLinkedQueue<Long> deletable = new ConcurrentLinkedQueue<>();
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private enum Operation {
+        GET, LIST, CREATE, UPDATE, DELETE
+    }
+
+    @DynamicPropertySource
+    static void datasource(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", () -> POSTGRES.getJdbcUrl("postgres", "postgres"));
+        registry.add("spring.datasource.username", () -> "postgres");
+        registry.add("spring.datasource.password", () -> "");
+    }
+
+    @AfterAll
+    static void stopPostgres() throws IOException {
+        POSTGRES.close();
+    }
+
+    @Test
+    void mixedWorkload() throws Exception {
+        int users = Integer.getInteger("load.users", 10_000);
+        int concurrency = Integer.getInteger("load.concurrency", 32);
+        Duration warmup = DurationStyle.detectAndParse(System.getProperty("load.warmup", "10s"));
+        Duration duration = DurationStyle.detectAndParse(System.getProperty("load.duration", "30s"));
+        String mixSpec = System.getProperty("load.mix", "get=60,list=20,create=10,update=7,delete=3");
+        Map<Operation, Integer> mix = parseMix(mixSpec);
+
+        seed(users);
+
+        long measureFrom = System.nanoTime() + warmup.toNanos();
+        long end = measureFrom + duration.toNanos();
+        Map<Operation, LatencyRecorder> results = new EnumMap<>(Operation.class);
+        for (Operation operation : Operation.values()) {
+            results.put(operation, new LatencyRecorder());
+        }
+
+        // Clients on virtual threads, so that thousands of them do not cost thousands of platform threads
+        ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor();
+        try {
+            List<Future<Map<Operation, LatencyRecorder>>> futures = new ArrayList<>();
+            for (int i = 0; i < concurrency; i++) {
+                futures.add(workers.submit(() -> runWorker(users, mix, measureFrom, end)));
+            }
+            for (Future<Map<Operation, LatencyRecorder>> future : futures) {
+                future.get().forEach((operation, recorder) -> results.get(operation).merge(recorder));
+            }
+        } finally {
+            workers.shutdownNow();
+        }
+
+        Properties report = report(results, duration);
+        // The parameters go into the report too, a baseline only means something for the run it came from
+        report.setProperty("load.users", String.valueOf(users));
+        report.setProperty("load.concurrency", String.valueOf(concurrency));
+        report.setProperty("load.warmup", warmup.toString());
+        report.setProperty("load.duration", duration.toString());
+        report.setProperty("load.mix", mixSpec);
+        Files.createDirectories(REPORT.getParent());
+        try (OutputStream out = Files.newOutputStream(REPORT)) {
+            report.store(out, "UserLoadTest.mixedWorkload");
+        }
+
+        for (Operation operation : Operation.values()) {
+            assertEquals(0, results.get(operation).errors(), operation + " requests failed");
+        }
+        List<String> regressions = compareWithBaseline(report);
+        assertTrue(regressions.isEmpty(), "Baseline check failed:\n" + String.join("\n", regressions));
+    }
+
+    private void seed(int users) {
+        jdbcTemplate.update("TRUNCATE user_table, user_changes");
+        jdbcTemplate.update("""
+                INSERT INTO user_table (id, name, email, created_at, updated_at)
+                SELECT g, 'Load User ' || g, 'load' || g || '@example.com', LOCALTIMESTAMP, LOCALTIMESTAMP
+                FROM generate_series(1, ?) g
+                """, users);
+        // Same block-above-maximum rule as the V2 migration
+        jdbcTemplate.queryForObject("SELECT setval('user_table_seq', ? + 50)", Long.class, users);
+        jdbcTemplate.execute("ANALYZE user_table");
+    }
+
+    private Map<Operation, LatencyRecorder> runWorker(int users, Map<Operation, Integer> mix,
+                                                      long measureFrom, long end) throws InterruptedException {
+        Map<Operation, LatencyRecorder> recorders = new EnumMap<>(Operation.class);
+        for (Operation operation : Operation.values()) {
+            recorders.put(operation, new LatencyRecorder());
+        }
+        int totalWeight = mix.values().stream().mapToInt(Integer::intValue).sum();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+
+        long start;
+        while ((start = System.nanoTime()) < end) {
+            Operation operation = pick(mix, random.nextInt(totalWeight));
+            Long deleteId = operation == Operation.DELETE ? deletable.poll() : null;
+            if (operation == Operation.DELETE && deleteId == null) {
+                operation = Operation.CREATE;
+            }
+            HttpRequest request = request(operation, users, deleteId, random);
+
+            HttpResponse<String> response;
+            try {
+                response = client.send(request, HttpResponse.BodyHandlers.ofString());
+            } catch (IOException e) {
+                response = null;
+            }
+            long latency = System.nanoTime() - start;
+
+            boolean ok = response != null && response.statusCode() / 100 == 2;
+            if (ok && operation == Operation.CREATE) {
+                deletable.add(createdId(response.body()));
+            }
+            if (start >= measureFrom) {
+                if (ok) {
+                    recorders.get(operation).record(latency);
+                } else {
+                    recorders.get(operation).recordError();
+                }
+            }
+        }
+        return recorders;
+    }
+
+    private HttpRequest request(Operation operation, int users, Long deleteId, ThreadLocalRandom random) {
+        String usersUri = "http://localhost:" + port + "/api/users";
+        long userId = random.nextLong(1, users + 1L);
+        return switch (operation) {
+            case GET -> HttpRequest.newBuilder(URI.create(usersUri + "/" + userId)).GET().build();
+            case LIST -> HttpRequest.newBuilder(URI.create(usersUri + "?after=" + (userId - 1) + "&limit=20")).GET().build();
+            case CREATE -> {
+                String suffix = UUID.randomUUID().toString();
+                yield json(usersUri, "POST",
+                        "{\"name\":\"Load " + suffix.substring(0, 8) + "\",\"email\":\"load-" + suffix + "@example.com\"}");
+            }
+            case UPDATE -> json(usersUri + "/" + userId, "PUT",
+                    "{\"name\":\"Updated " + random.nextInt(1_000_000) + "\"}");
+            case DELETE -> HttpRequest.newBuilder(URI.create(usersUri + "/" + deleteId)).DELETE().build();
+        };
+    }
+
+    private static HttpRequest json(String uri, String method, String body) {
+        return HttpRequest.newBuilder(URI.create(uri))
+                .header("Content-Type", "application/json")
+                .method(method, HttpRequest.BodyPublishers.ofString(body))
+                .build();
+    }
+
+    private long createdId(String body) {
+        try {
+            return objectMapper.readTree(body).path("id").asLong();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static Operation pick(Map<Operation, Integer> mix, int roll) {
+        for (Map.Entry<Operation, Integer> entry : mix.entrySet()) {
+            roll -= entry.getValue();
+            if (roll < 0) {
+                return entry.getKey();
+            }
+        }
+        throw new IllegalStateException("Roll outside of the mix weights");
+    }
+
+    private static Map<Operation, Integer> parseMix(String mix) {
+        Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+        for (String entry : mix.split(",")) {
+            String[] parts = entry.trim().split("=");
+            int weight = Integer.parseInt(parts[1].trim());
+            if (weight > 0) {
+                weights.put(Operation.valueOf(parts[0].trim().toUpperCase()), weight);
+            }
+        }
+        return weights;
+    }
+
+    private static Properties report(Map<Operation, LatencyRecorder> results, Duration duration) {
+        Properties report = new Properties();
+        System.out.printf("%n%-8s %10s %10s %10s %10s %10s %8s%n",
+                "endpoint", "requests", "req/s", "p50 ms", "p99 ms", "p999 ms", "errors");
+        for (Map.Entry<Operation, LatencyRecorder> entry : results.entrySet()) {
+            LatencyRecorder recorder = entry.getValue();
+            if (recorder.count() == 0 && recorder.errors() == 0) {
+                continue;
+            }
+            String key = entry.getKey().name().toLowerCase();
+            double throughput = recorder.count() / (duration.toMillis() / 1000.0);
+            double p50 = recorder.percentileMillis(50);
+            double p99 = recorder.percentileMillis(99);
+            double p999 = recorder.percentileMillis(99.9);
+            System.out.printf("%-8s %10d %10.1f %10.2f %10.2f %10.2f %8d%n",
+                    key, recorder.count(), throughput, p50, p99, p999, recorder.errors());
+
+            report.setProperty(key + ".throughput", format(throughput));
+            report.setProperty(key + ".p50", format(p50));
+            report.setProperty(key + ".p99", format(p99));
+            report.setProperty(key + ".p999", format(p999));
+        }
+        return report;
+    }
+
+    /**
+     * Fails on a missing baseline, on one recorded with other {@code load.*} parameters and on figures it does
+     * not have; {@code -Dload.baseline=none}, or a baseline holding only parameters, skips the comparison. p999 is reported but not compared, a few
+     * hundred samples make it too noisy to gate on.
+     */
+    private static List<String> compareWithBaseline(Properties report) throws IOException {
+        String baselineLocation = System.getProperty("load.baseline", "perf/load/baseline.properties");
+        double tolerance = Double.parseDouble(System.getProperty("load.tolerance", "0.2"));
+        List<String> regressions = new ArrayList<>();
+        if ("none".equals(baselineLocation)) {
+            return regressions;
+        }
+        Path baselinePath = Path.of(baselineLocation);
+        if (!Files.exists(baselinePath)) {
+            regressions.add("No baseline at " + baselinePath + ", record one with perf/load/record-baseline.sh");
+            return regressions;
+        }
+        Properties baseline = new Properties();
+        try (InputStream in = Files.newInputStream(baselinePath)) {
+            baseline.load(in);
+        }
+        if (baseline.stringPropertyNames().stream().allMatch(key -> key.startsWith("load."))) {
+            System.out.println("No figures in " + baselinePath + " yet, reporting only;"
+                    + " record them with perf/load/record-baseline.sh");
+            return regressions;
+        }
+        for (String key : report.stringPropertyNames()) {
+            String expected = baseline.getProperty(key);
+            if (key.startsWith("load.")) {
+                if (!report.getProperty(key).equals(expected)) {
+                    regressions.add(key + "=" + report.getProperty(key) + " differs from the baseline's " + expected
+                            + ", run with the baseline's parameters or record a new one");
+                }
+                continue;
+            }
+            if (key.endsWith(".p999")) {
+                continue;
+            }
+            if (expected == null) {
+                regressions.add(key + ": not recorded in the baseline");
+                continue;
+            }
+            double actual = Double.parseDouble(report.getProperty(key));
+            double limit = Double.parseDouble(expected);
+            boolean regressed = key.endsWith(".throughput")
+                    ? actual < limit * (1 - tolerance)
+                    : actual > limit * (1 + tolerance);
+            if (regressed) {
+                regressions.add(key + ": " + report.getProperty(key) + " (baseline " + expected + ")");
+            }
+        }
+        return regressions;
+    }
+
+    private static String format(double value) {
+        return String.format(Locale.ROOT, "%.2f", value);
+    }
+
+    private static EmbeddedPostgres startPostgres() {
+        try {
+            return EmbeddedPostgres.builder().start();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not start embedded PostgreSQL", e);
+        }
+    }
+}
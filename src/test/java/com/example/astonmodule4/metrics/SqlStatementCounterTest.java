@@ -0,0 +1,55 @@
+package com.example.astonmodule4.metrics;
+
+import net.ttddyy.dsproxy.ExecutionInfo;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SqlStatementCounterTest {
+    private final SqlStatementCounter counter = new SqlStatementCounter();
+
+    @AfterEach
+    void tearDown() {
+        SqlStatementCounter.stop();
+    }
+
+    @Test
+    void countsStatementsAndAffectedRowsOfTheCurrentRequest() {
+        SqlStatementCounter.Counts counts = SqlStatementCounter.start();
+
+        counter.afterQuery(executed(1), List.of());
+        counter.afterQuery(executed(new int[]{1, 1, 1}), List.of());
+        counter.afterQuery(executed(false), List.of());
+
+        assertEquals(3, counts.statements());
+        assertEquals(4, counts.rows());
+    }
+
+    @Test
+    void ignoresStatementsOutsideOfRequests() {
+        counter.afterQuery(executed(5), List.of());
+
+        SqlStatementCounter.Counts counts = SqlStatementCounter.start();
+        assertEquals(0, counts.statements());
+        assertEquals(0, counts.rows());
+    }
+
+    @Test
+    void skipsUnknownUpdateCounts() {
+        SqlStatementCounter.Counts counts = SqlStatementCounter.start();
+
+        counter.afterQuery(executed(new int[]{java.sql.Statement.SUCCESS_NO_INFO, 2}), List.of());
+
+        assertEquals(1, counts.statements());
+        assertEquals(2, counts.rows());
+    }
+
+    private static ExecutionInfo executed(Object result) {
+        ExecutionInfo executionInfo = new ExecutionInfo();
+        executionInfo.setResult(result);
+        return executionInfo;
+    }
+}
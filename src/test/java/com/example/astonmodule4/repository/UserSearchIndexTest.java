@@ -0,0 +1,191 @@
+package com.example.astonmodule4.repository;
+
+import com.example.astonmodule4.model.UserField;
+import com.example.astonmodule4.model.UserView;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.flywaydb.core.Flyway;
+import org.flywaydb.core.api.output.MigrateResult;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The migrations against a real PostgreSQL, including the concurrent index builds, and the search queries
+ * they are meant for: the plans of the SQL Hibernate actually renders for
+ * {@link UserRepository#searchViewsAfter}, and what both search queries match.
+ */
+@DataJpaTest(properties = {
+        "spring.flyway.enabled=false",
+        "spring.jpa.show-sql=false",
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+                + "com.example.astonmodule4.repository.UserSearchIndexTest$RecordingStatementInspector"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class UserSearchIndexTest {
+    private static final int USERS = 100_000;
+    private static final int PAGE_SIZE = 21;
+    // Migrated and seeded before the context starts, Hibernate validates the schema
+    private static final EmbeddedPostgres POSTGRES = startPostgres();
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * Records the SQL of every statement Hibernate prepares.
+     */
+    public static class RecordingStatementInspector implements StatementInspector {
+        static final List<String> STATEMENTS = new CopyOnWriteArrayList<>();
+
+        @Override
+        public String inspect(String sql) {
+            STATEMENTS.add(sql);
+            return sql;
+        }
+    }
+
+    @DynamicPropertySource
+    static void datasource(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", () -> POSTGRES.getJdbcUrl("postgres", "postgres"));
+        registry.add("spring.datasource.username", () -> "postgres");
+        registry.add("spring.datasource.password", () -> "");
+    }
+
+    @AfterAll
+    static void stopPostgres() throws IOException {
+        POSTGRES.close();
+    }
+
+    @Test
+    void concurrentIndexesAreBuiltAndValid() {
+        List<String> indexes = jdbcTemplate.queryForList("""
+                SELECT c.relname
+                FROM pg_index i
+                JOIN pg_class c ON c.oid = i.indexrelid
+                WHERE i.indrelid = 'user_table'::regclass AND i.indisvalid
+                ORDER BY c.relname""", String.class);
+
+        assertTrue(indexes.containsAll(List.of("user_table_email_key",
+                "user_table_name_prefix_idx", "user_table_email_prefix_idx",
+                "user_table_name_trgm_idx", "user_table_email_trgm_idx")), indexes::toString);
+    }
+
+    @Test
+    void searchKeepsItsBackslashEscape() {
+        String sql = searchSql("ab3f%");
+
+        assertTrue(sql.contains("escape '\\'"), sql);
+    }
+
+    @Test
+    void prefixSearchUsesPrefixIndexes() {
+        String plan = explain("ab3f%");
+
+        assertTrue(plan.contains("user_table_name_prefix_idx"), plan);
+        assertTrue(plan.contains("user_table_email_prefix_idx"), plan);
+    }
+
+    @Test
+    void substringSearchUsesTrigramIndexes() {
+        String plan = explain("%ab3f%");
+
+        assertTrue(plan.contains("user_table_name_trgm_idx"), plan);
+        assertTrue(plan.contains("user_table_email_trgm_idx"), plan);
+    }
+
+    @Test
+    void escapedUnderscoreMatchesOnlyItself() {
+        jdbcTemplate.update("""
+                INSERT INTO user_table (id, name, email, created_at, updated_at, version)
+                VALUES (nextval('user_table_seq'), 'Snake_Case Tester', 'snake.underscore@example.com',
+                        LOCALTIMESTAMP, LOCALTIMESTAMP, 0),
+                       (nextval('user_table_seq'), 'SnakeXCase Tester', 'snake.letter@example.com',
+                        LOCALTIMESTAMP, LOCALTIMESTAMP, 0)""");
+        // As UserService escapes the query "snake_case"
+        String pattern = "%snake\\_case%";
+
+        List<UserView> views = userRepository.searchViewsAfter(pattern, 0L, PageRequest.ofSize(PAGE_SIZE));
+        List<UserView> sparseViews = userRepository.searchSparseViewsAfter(
+                EnumSet.of(UserField.ID, UserField.NAME), pattern, 0L, PAGE_SIZE);
+
+        assertEquals(List.of("Snake_Case Tester"), views.stream().map(UserView::name).toList());
+        assertEquals(List.of("Snake_Case Tester"), sparseViews.stream().map(UserView::name).toList());
+    }
+
+    private String searchSql(String pattern) {
+        RecordingStatementInspector.STATEMENTS.clear();
+        userRepository.searchViewsAfter(pattern, 0L, PageRequest.ofSize(PAGE_SIZE));
+        return RecordingStatementInspector.STATEMENTS.stream()
+                .filter(sql -> sql.contains(" like "))
+                .reduce((first, second) -> second)
+                .orElseThrow(() -> new AssertionError(
+                        "No search statement in " + RecordingStatementInspector.STATEMENTS));
+    }
+
+    // The bind parameters are inlined the way the planner sees them in a custom plan
+    private String explain(String pattern) {
+        String sql = searchSql(pattern);
+        StringBuilder inlined = new StringBuilder("EXPLAIN ");
+        int from = 0;
+        for (int at = sql.indexOf('?'); at >= 0; at = sql.indexOf('?', from)) {
+            String before = sql.substring(0, at).stripTrailing();
+            inlined.append(sql, from, at);
+            if (before.endsWith("like")) {
+                inlined.append('\'').append(pattern).append('\'');
+            } else if (before.endsWith("first") || before.endsWith("limit")) {
+                inlined.append(PAGE_SIZE);
+            } else {
+                inlined.append(0);
+            }
+            from = at + 1;
+        }
+        inlined.append(sql.substring(from));
+        return String.join("\n", jdbcTemplate.queryForList(inlined.toString(), String.class));
+    }
+
+    private static EmbeddedPostgres startPostgres() {
+        EmbeddedPostgres postgres;
+        try {
+            postgres = EmbeddedPostgres.builder().start();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not start embedded PostgreSQL", e);
+        }
+        // Migrated here rather than by Spring so that a hanging concurrent index build fails the test
+        Flyway flyway = Flyway.configure()
+                .dataSource(postgres.getPostgresDatabase())
+                .configuration(Map.of("flyway.postgresql.transactional.lock", "false"))
+                .load();
+        MigrateResult result = assertTimeoutPreemptively(Duration.ofMinutes(1), flyway::migrate);
+        assertTrue(result.success);
+
+        JdbcTemplate seed = new JdbcTemplate(postgres.getPostgresDatabase());
+        seed.update("""
+                INSERT INTO user_table (id, name, email, created_at, updated_at, version)
+                SELECT nextval('user_table_seq'),
+                       initcap(substr(md5(g::text), 1, 6)) || ' ' || initcap(substr(md5((g * 7)::text), 1, 9)),
+                       substr(md5((g * 13)::text), 1, 10) || '.' || g || '@example.com',
+                       LOCALTIMESTAMP, LOCALTIMESTAMP, 0
+                FROM generate_series(1, ?) AS g""", USERS);
+        seed.execute("ANALYZE user_table");
+        return postgres;
+    }
+}
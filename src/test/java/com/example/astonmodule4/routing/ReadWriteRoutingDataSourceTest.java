@@ -0,0 +1,155 @@
+package com.example.astonmodule4.routing;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class ReadWriteRoutingDataSourceTest {
+    private static final String PRIMARY_LSN = "0/3000060";
+
+    @AfterEach
+    void tearDown() {
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+        ReadWriteRoutingDataSource.unpin();
+    }
+
+    @Test
+    void writesGoToPrimary() throws SQLException {
+        ReadWriteRoutingDataSource dataSource = routing(replica(0), replica(0));
+
+        assertEquals(ReplicaSet.PRIMARY, dataSource.determineCurrentLookupKey());
+    }
+
+    @Test
+    void readOnlyTransactionsAreSpreadOverReplicas() throws SQLException {
+        ReadWriteRoutingDataSource dataSource = routing(replica(0), replica(0));
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+
+        assertEquals("replica-0", dataSource.determineCurrentLookupKey());
+        assertEquals("replica-1", dataSource.determineCurrentLookupKey());
+        assertEquals("replica-0", dataSource.determineCurrentLookupKey());
+    }
+
+    @Test
+    void skipsUnreachableAndLaggingReplicas() throws SQLException {
+        DataSource unreachable = mock(DataSource.class);
+        when(unreachable.getConnection()).thenThrow(new SQLException("Connection refused"));
+        ReadWriteRoutingDataSource dataSource = routing(unreachable, replica(60), replica(0));
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals("replica-2", dataSource.determineCurrentLookupKey());
+        }
+    }
+
+    @Test
+    void fallsBackToPrimaryWithoutUsableReplica() throws SQLException {
+        ReadWriteRoutingDataSource dataSource = routing(replica(60));
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+
+        assertEquals(ReplicaSet.PRIMARY, dataSource.determineCurrentLookupKey());
+    }
+
+    @Test
+    void pinnedReadsGoToPrimary() throws SQLException {
+        ReadWriteRoutingDataSource dataSource = routing(replica(0));
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        ReadWriteRoutingDataSource.pinToPrimary();
+
+        assertEquals(ReplicaSet.PRIMARY, dataSource.determineCurrentLookupKey());
+    }
+
+    @Test
+    void replicaRejoinsOnceItCatchesUp() throws SQLException {
+        DataSource replica = replica(60);
+        ReplicaSet replicaSet = replicaSet(replica);
+        ReadWriteRoutingDataSource dataSource = new ReadWriteRoutingDataSource(replicaSet);
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        assertEquals(ReplicaSet.PRIMARY, dataSource.determineCurrentLookupKey());
+
+        ResultSet caughtUp = replica.getConnection().prepareStatement("").executeQuery();
+        when(caughtUp.getDouble(1)).thenReturn(0.5);
+        replicaSet.checkReplicas();
+
+        assertEquals("replica-0", dataSource.determineCurrentLookupKey());
+    }
+
+    @Test
+    void lagIsMeasuredAgainstThePrimaryPosition() throws SQLException {
+        DataSource replica = replica(0);
+        replicaSet(replica);
+
+        verify(replica.getConnection().prepareStatement(""), atLeastOnce()).setString(1, PRIMARY_LSN);
+    }
+
+    @Test
+    void keepsReplicaStateWhilePrimaryPositionIsUnknown() throws SQLException {
+        DataSource primary = primary();
+        DataSource replica = replica(0);
+        ReplicaSet replicaSet = new ReplicaSet(primary, Map.of("replica-0", replica), Duration.ofSeconds(10));
+        replicaSet.afterPropertiesSet();
+        ReadWriteRoutingDataSource dataSource = new ReadWriteRoutingDataSource(replicaSet);
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+
+        when(primary.getConnection()).thenThrow(new SQLException("Connection refused"));
+        replicaSet.checkReplicas();
+
+        assertEquals("replica-0", dataSource.determineCurrentLookupKey());
+    }
+
+    private static ReadWriteRoutingDataSource routing(DataSource... replicas) {
+        return new ReadWriteRoutingDataSource(replicaSet(replicas));
+    }
+
+    private static ReplicaSet replicaSet(DataSource... replicas) {
+        Map<String, DataSource> replicaMap = new LinkedHashMap<>();
+        for (int i = 0; i < replicas.length; i++) {
+            replicaMap.put("replica-" + i, replicas[i]);
+        }
+        ReplicaSet replicaSet = new ReplicaSet(primary(), replicaMap, Duration.ofSeconds(10));
+        replicaSet.afterPropertiesSet();
+        return replicaSet;
+    }
+
+    // A stand-in primary reporting a fixed WAL position
+    private static DataSource primary() throws SQLException {
+        ResultSet resultSet = mock(ResultSet.class);
+        when(resultSet.next()).thenReturn(true);
+        when(resultSet.getString(1)).thenReturn(PRIMARY_LSN);
+        Statement statement = mock(Statement.class);
+        when(statement.executeQuery(anyString())).thenReturn(resultSet);
+        Connection connection = mock(Connection.class);
+        when(connection.createStatement()).thenReturn(statement);
+        DataSource dataSource = mock(DataSource.class);
+        when(dataSource.getConnection()).thenReturn(connection);
+        return dataSource;
+    }
+
+    // A stand-in replica whose health check reports the given lag
+    private static DataSource replica(double lagSeconds) throws SQLException {
+        ResultSet resultSet = mock(ResultSet.class);
+        when(resultSet.next()).thenReturn(true);
+        when(resultSet.getDouble(1)).thenReturn(lagSeconds);
+        PreparedStatement statement = mock(PreparedStatement.class);
+        when(statement.executeQuery()).thenReturn(resultSet);
+        Connection connection = mock(Connection.class);
+        when(connection.prepareStatement(anyString())).thenReturn(statement);
+        DataSource dataSource = mock(DataSource.class);
+        when(dataSource.getConnection()).thenReturn(connection);
+        return dataSource;
+    }
+}